@@ -1,8 +1,5 @@
 package io.higgs.boson;
 
-import java.util.Arrays;
-import java.util.Comparator;
-
 /**
  * Defines all the Boson types
  */
@@ -40,19 +37,40 @@ public enum BosonType {
   JODA_DURATION(29),
   JODA_INTERVAL(30),
   JODA_PERIOD(31),
-  UUID(32);
+  UUID(32),
+  //string table - structural strings (class, field and enum names) are written once per message and then referenced
+  STRING_DEF(33),
+  STRING_REF(34),
+  //an array of primitives, the component type is written once followed by the raw values
+  PACKED_ARRAY(35),
+  //a POLO written without a reference number, it can't be referred to by a REFERENCE
+  COMPACT_POLO(36);
   public final byte id;
-  private static BosonType[] values;
+  /**
+   * Indexed by id, built once when the class is initialised so it is safely published to all threads
+   */
+  private static final BosonType[] BY_ID = new BosonType[128];
+
+  static {
+    for (BosonType type : values()) {
+      BY_ID[type.id] = type;
+    }
+  }
 
   BosonType(int idx) {
     id = (byte) idx;
   }
 
+  /**
+   * @param id a type id
+   * @return the type with the given id
+   * @throws IllegalArgumentException if no type has the given id
+   */
   public static BosonType byId(byte id) {
-    if (values == null) {
-      values = values();
-      Arrays.sort(values, Comparator.comparingInt(a -> a.id));
+    BosonType type = id < 0 ? null : BY_ID[id];
+    if (type == null) {
+      throw new IllegalArgumentException("Unknown boson type id " + id);
     }
-    return values[id - 1];
+    return type;
   }
 }
@@ -0,0 +1,133 @@
+package io.higgs.boson.serialization;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.lang.String.format;
+
+/**
+ * The messages of a batch written by {@link BosonWriter#writeBatch(Iterable, BosonWriter.WriterCtx, BosonWriter)}.
+ * The batch's index and string table are read up front, each message is only decoded when it is asked for so a
+ * batch can be iterated over without holding all of its messages, or just some of its messages read.
+ * <pre>
+ * for (Order order : BosonBatch.&lt;Order&gt;of(bytes)) {
+ *   ...
+ * }
+ * </pre>
+ * A batch is not thread safe.
+ *
+ * @param <T> the type of the messages
+ */
+public final class BosonBatch<T> implements Iterable<T> {
+  private final BosonInput input;
+  private final BosonReader.ReaderCtx ctx;
+  private final BosonReader reader;
+  /**
+   * Where each message starts, relative to the version byte
+   */
+  private final int[] offsets;
+
+  /**
+   * @param input  the batch, it must support {@link BosonInput#seek(long)}
+   * @param ctx    the context to read messages with
+   * @param reader the reader to read messages with
+   */
+  public BosonBatch(BosonInput input, BosonReader.ReaderCtx ctx, BosonReader reader) {
+    this.ctx = ctx;
+    this.reader = reader;
+    try {
+      this.input = BosonReader.open(ctx, input, false, true);
+      long start = this.input.position() + 4;
+      int index = this.input.readInt();
+      if (index < start) {
+        throw new InvalidDataException(format("Batch index position %s is corrupt", index), null);
+      }
+      this.input.seek(index);
+      int count = this.input.readInt();
+      //every message takes at least a byte so there can't be more of them than bytes before the index
+      if (count < 0 || count > index - start) {
+        throw new InvalidDataException(format("Batch of %s messages is corrupt", count), null);
+      }
+      offsets = new int[count];
+      for (int i = 0; i < count; i++) {
+        offsets[i] = this.input.readInt();
+      }
+      int strings = this.input.readInt();
+      if (strings < 0) {
+        throw new InvalidDataException(format("Negative string table size %s, possible data corruption", strings),
+          null);
+      }
+      for (int i = 0; i < strings; i++) {
+        ctx.defineString(reader.readUtf8(ctx), 0);
+      }
+    } catch (InvalidDataException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new InvalidDataException("Unable to read the batch's index", e);
+    }
+  }
+
+  public static <T> BosonBatch<T> of(byte[] data) {
+    return new BosonBatch<>(new ByteArrayInput(data), new BosonReader.ReaderCtx(), BosonReader.getInstance());
+  }
+
+  /**
+   * Read the batch starting at the buffer's position, the buffer itself is left untouched
+   */
+  public static <T> BosonBatch<T> of(ByteBuffer data) {
+    return new BosonBatch<>(new ByteBufferInput(data.duplicate()), new BosonReader.ReaderCtx(),
+      BosonReader.getInstance());
+  }
+
+  /**
+   * @return the number of messages in the batch
+   */
+  public int size() {
+    return offsets.length;
+  }
+
+  /**
+   * Decode a message, each call decodes it again
+   *
+   * @param index the message's position in the batch
+   * @return the message
+   */
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    if (index < 0 || index >= offsets.length) {
+      throw new IndexOutOfBoundsException(format("Message %s of a batch of %s", index, offsets.length));
+    }
+    try {
+      //references don't cross messages, the string table is shared by all of them
+      ctx.clearReferences();
+      input.seek(offsets[index]);
+      return (T) reader.readMessage(ctx);
+    } catch (Exception e) {
+      throw new InvalidDataException(format("Unable to read message %s of the batch", index), e);
+    }
+  }
+
+  /**
+   * @return an iterator decoding each message as it is reached
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<T>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < offsets.length;
+      }
+
+      @Override
+      public T next() {
+        if (next == offsets.length) {
+          throw new NoSuchElementException();
+        }
+        return get(next++);
+      }
+    };
+  }
+}
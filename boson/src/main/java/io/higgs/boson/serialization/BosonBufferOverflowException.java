@@ -0,0 +1,10 @@
+package io.higgs.boson.serialization;
+
+/**
+ * Thrown when a message doesn't fit in a caller supplied buffer and no allocator was given to grow it.
+ */
+public class BosonBufferOverflowException extends InvalidDataException {
+  public BosonBufferOverflowException(String msg) {
+    super(msg, null);
+  }
+}
@@ -0,0 +1,392 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.BosonType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Decodes messages from fragments of bytes as they arrive, e.g. from a non-blocking channel, without ever waiting
+ * for more. Fragments are copied into a buffer owned by the decoder and scanned as they come in, remembering how far
+ * into the message's structure the scan got, so each byte is scanned once no matter how the message is split up.
+ * Once a message is complete it is decoded and handed over. Framed messages, see
+ * {@link BosonWriter.WriterCtx#framed(boolean)}, and compressed ones don't need scanning at all, only their size.
+ * <pre>
+ * int n = channel.read(readBuffer);
+ * readBuffer.flip();
+ * decoder.feed(readBuffer, messages);
+ * readBuffer.clear();
+ * </pre>
+ * Use one decoder per connection. A decoder is not thread safe and after it has thrown it can't be used again, the
+ * connection should be closed.
+ */
+public final class BosonFeedDecoder {
+  /**
+   * The largest message decoded unless another limit is given, a larger message is taken to be corrupt or malicious
+   */
+  public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 << 20;
+  //what the values counted by each open container are
+  private static final byte VALUES = 0;
+  /**
+   * A POLO's class name, the POLO's field count follows it
+   */
+  private static final byte POLO_HEAD = 1;
+  private final BosonReader.ReaderCtx ctx;
+  private final int maxMessageSize;
+  private byte[] buf = new byte[256];
+  /**
+   * Bytes held, the current message always starts at 0
+   */
+  private int limit;
+  /**
+   * How far the current message has been scanned
+   */
+  private int scan;
+  /**
+   * Bytes to pass over before scanning resumes, the rest of a string, packed array, sized container or frame
+   */
+  private long skip;
+  private boolean started;
+  private boolean v1;
+  private boolean sized;
+  //values left in each container the scan is in, the message itself being the outermost
+  private byte[] kinds = new byte[8];
+  private long[] counts = new long[8];
+  private int depth;
+  //the scan position while an item is read, only kept if all of it has arrived
+  private int cur;
+
+  public BosonFeedDecoder() {
+    this(new BosonReader.ReaderCtx(), DEFAULT_MAX_MESSAGE_SIZE);
+  }
+
+  /**
+   * @param ctx            the context to decode each message with
+   * @param maxMessageSize the largest message to accept
+   */
+  public BosonFeedDecoder(BosonReader.ReaderCtx ctx, int maxMessageSize) {
+    if (maxMessageSize < 1) {
+      throw new IllegalArgumentException("Max message size must be at least 1 byte");
+    }
+    this.ctx = ctx;
+    this.maxMessageSize = maxMessageSize;
+  }
+
+  /**
+   * Take the next fragment of the stream, all of it is consumed
+   *
+   * @param fragment the bytes which arrived, from its position to its limit
+   * @param messages where to add the messages completed by this fragment
+   * @return the number of messages added
+   * @throws InvalidDataException if the stream isn't valid Boson or a message exceeds the maximum size
+   */
+  public int feed(ByteBuffer fragment, List<Object> messages) {
+    int n = fragment.remaining();
+    if (buf.length - limit < n) {
+      buf = Arrays.copyOf(buf, Math.max(limit + n, buf.length << 1));
+    }
+    fragment.get(buf, limit, n);
+    limit += n;
+    int decoded = 0;
+    try {
+      while (true) {
+        if (skip > 0) {
+          long step = Math.min(skip, limit - scan);
+          scan += step;
+          skip -= step;
+          if (skip > 0) {
+            break;
+          }
+        }
+        if (!started) {
+          if (!header()) {
+            break;
+          }
+        } else if (depth == 0) {
+          checkSize(scan);
+          messages.add(BosonReader.decode(new ByteArrayInput(buf, 0, scan), ctx));
+          decoded++;
+          //move what's left, the start of the next message, to the front
+          System.arraycopy(buf, scan, buf, 0, limit - scan);
+          limit -= scan;
+          scan = 0;
+          started = false;
+        } else if (!step()) {
+          break;
+        }
+      }
+    } catch (InvalidDataException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new InvalidDataException(format("Invalid data %s bytes into a message", cur), e);
+    }
+    //what's left is the start of a message
+    checkSize(limit);
+    return decoded;
+  }
+
+  private void checkSize(int size) {
+    if (size > maxMessageSize) {
+      throw new InvalidDataException(format("Message of at least %s bytes is over the limit of %s", size,
+        maxMessageSize), null);
+    }
+  }
+
+  /**
+   * @return the number of bytes held for a message which hasn't fully arrived
+   */
+  public int pending() {
+    return limit;
+  }
+
+  /**
+   * Read the version byte and, if the message is framed, its size or, if it is compressed, its deflated size
+   */
+  private boolean header() {
+    cur = scan;
+    if (!fixed(1)) {
+      return false;
+    }
+    byte header = buf[scan];
+    int version = header & 0x0F;
+    int flags = header & 0xF0;
+    if ((version != BosonWriter.WriterCtx.VERSION_1 && version != BosonWriter.WriterCtx.VERSION_2)
+          || (flags & ~(BosonWriter.WriterCtx.SIZED_CONTAINERS | BosonWriter.WriterCtx.FRAMED
+          | BosonWriter.WriterCtx.COMPRESSED)) != 0) {
+      throw new InvalidDataException(format("Unsupported version byte %s", header), null);
+    }
+    v1 = version == BosonWriter.WriterCtx.VERSION_1;
+    sized = (flags & BosonWriter.WriterCtx.SIZED_CONTAINERS) != 0;
+    if ((flags & BosonWriter.WriterCtx.FRAMED) != 0) {
+      if (!fixed(4)) {
+        return false;
+      }
+      int size = intAt(cur - 4);
+      if (size < 0 || size > maxMessageSize) {
+        throw new InvalidDataException(format("Message of %s bytes is over the limit of %s", size, maxMessageSize),
+          null);
+      }
+      //the whole message just has to arrive
+      skip = size;
+    } else if ((flags & BosonWriter.WriterCtx.COMPRESSED) != 0) {
+      //the original and deflated sizes, only the deflated bytes have to arrive
+      if (!fixed(8)) {
+        return false;
+      }
+      int length = intAt(cur - 4);
+      if (length < 0 || length > maxMessageSize) {
+        throw new InvalidDataException(format("Message of %s bytes is over the limit of %s", length, maxMessageSize),
+          null);
+      }
+      skip = length;
+    } else {
+      push(VALUES, 1);
+    }
+    scan = cur;
+    started = true;
+    return true;
+  }
+
+  /**
+   * Scan the next item of the innermost container
+   *
+   * @return false if more bytes are needed, nothing is consumed
+   */
+  private boolean step() {
+    cur = scan;
+    int top = depth - 1;
+    if (counts[top] == 0) {
+      if (kinds[top] == POLO_HEAD) {
+        long fields = size();
+        if (fields < 0) {
+          return false;
+        }
+        kinds[top] = VALUES;
+        counts[top] = fields << 1; //field names and values
+      } else {
+        depth--;
+      }
+      scan = cur;
+      return true;
+    }
+    if (!fixed(1)) {
+      return false;
+    }
+    byte type = buf[cur - 1];
+    if (!value(type)) {
+      return false;
+    }
+    counts[top]--;
+    scan = cur;
+    return true;
+  }
+
+  /**
+   * Scan a value's type specific header, its payload is skipped or pushed as a container
+   */
+  private boolean value(byte type) {
+    long n;
+    switch (BosonType.byId(type)) {
+      case NULL:
+        return true;
+      case BYTE:
+      case BOOLEAN:
+        return fixed(1);
+      case SHORT:
+      case CHAR:
+        return fixed(2);
+      case FLOAT:
+        return fixed(4);
+      case DOUBLE:
+        return fixed(8);
+      case INT:
+        return v1 ? fixed(4) : varint(5);
+      case LONG:
+      case DATE:
+      case LOCAL_DATE:
+      case JODA_DATETIME:
+        return v1 ? fixed(8) : varint(10);
+      case STRING:
+      case STRING_DEF:
+      case BYTE_ARRAY:
+        n = size();
+        if (n < 0) {
+          return false;
+        }
+        skip = n;
+        return true;
+      case STRING_REF:
+      case REFERENCE:
+        return size() >= 0;
+      case PACKED_ARRAY:
+        if (!fixed(1)) {
+          return false;
+        }
+        int width = BosonReader.packedWidth(buf[cur - 1]);
+        n = size();
+        if (n < 0) {
+          return false;
+        }
+        skip = n * width;
+        return true;
+      case ENUM:
+        push(VALUES, 2); //class and constant names
+        return true;
+      case LIST:
+      case SET:
+      case MAP:
+      case ARRAY:
+      case POLO:
+      case COMPACT_POLO:
+        return container(type);
+      case UUID:
+        throw new UnsupportedBosonTypeException(format("type %s is not a supported boson type", type), null);
+      default:
+        //the remaining types are written as a string
+        push(VALUES, 1);
+        return true;
+    }
+  }
+
+  private boolean container(byte type) {
+    if (sized) {
+      //no need to look inside, the header gives the container's length
+      if (!fixed(BosonWriter.WriterCtx.CONTAINER_HEADER)) {
+        return false;
+      }
+      int length = intAt(cur - BosonWriter.WriterCtx.CONTAINER_HEADER);
+      if (length < 0) {
+        throw new InvalidDataException(format("Corrupt container header at %s", cur), null);
+      }
+      skip = length;
+      return true;
+    }
+    if (type == BosonType.POLO.id || type == BosonType.COMPACT_POLO.id) {
+      //the field count comes after the class name
+      if (type == BosonType.POLO.id && size() < 0) {
+        return false;
+      }
+      push(POLO_HEAD, 1);
+      return true;
+    }
+    long n = size();
+    if (n < 0) {
+      return false;
+    }
+    if (type == BosonType.MAP.id) {
+      push(VALUES, n << 1); //keys and values
+    } else if (type == BosonType.ARRAY.id) {
+      push(VALUES, n);
+      push(VALUES, 1); //the component type's name comes first
+    } else {
+      push(VALUES, n);
+    }
+    return true;
+  }
+
+  private void push(byte kind, long count) {
+    if (depth == kinds.length) {
+      kinds = Arrays.copyOf(kinds, depth << 1);
+      counts = Arrays.copyOf(counts, depth << 1);
+    }
+    kinds[depth] = kind;
+    counts[depth] = count;
+    depth++;
+  }
+
+  private boolean fixed(int n) {
+    if (limit - cur < n) {
+      return false;
+    }
+    cur += n;
+    return true;
+  }
+
+  /**
+   * @return the size at the scan position or -1 if it hasn't all arrived
+   */
+  private long size() {
+    if (v1) {
+      if (!fixed(4)) {
+        return -1;
+      }
+      int size = intAt(cur - 4);
+      if (size < 0) {
+        throw new InvalidDataException(format("Negative size %s, possible data corruption", size), null);
+      }
+      return size;
+    }
+    int at = cur;
+    if (!varint(5)) {
+      return -1;
+    }
+    long v = 0;
+    for (int i = at, shift = 0; i < cur; i++, shift += 7) {
+      v |= (long) (buf[i] & 0x7F) << shift;
+    }
+    if (v > Integer.MAX_VALUE) {
+      throw new InvalidDataException(format("Negative size %s, possible data corruption", (int) v), null);
+    }
+    return v;
+  }
+
+  private boolean varint(int maxBytes) {
+    for (int i = 0; i < maxBytes; i++) {
+      if (cur + i >= limit) {
+        return false;
+      }
+      if (buf[cur + i] >= 0) {
+        cur += i + 1;
+        return true;
+      }
+    }
+    throw new InvalidDataException(format("Malformed varint, more than %s bytes", maxBytes), null);
+  }
+
+  private int intAt(int at) {
+    return (buf[at] & 0xFF) << 24 | (buf[at + 1] & 0xFF) << 16 | (buf[at + 2] & 0xFF) << 8 | (buf[at + 3] & 0xFF);
+  }
+}
@@ -0,0 +1,160 @@
+package io.higgs.boson.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import static java.lang.String.format;
+
+/**
+ * Splits a stream or blocking channel of framed messages, see {@link BosonWriter.WriterCtx#framed(boolean)}, written
+ * one after another into single messages without parsing them. Each frame is read into the same buffer, which only
+ * grows when a frame is larger than any before it, and decoded with the same context.
+ * <pre>
+ * BosonFrameReader frames = new BosonFrameReader(socket.getInputStream());
+ * while (frames.nextFrame()) {
+ *   Order order = frames.decode();
+ * }
+ * </pre>
+ * The stream or channel isn't closed. A frame reader is not thread safe.
+ */
+public final class BosonFrameReader {
+  /**
+   * The largest frame read unless another limit is given, a larger size is taken to be corrupt
+   */
+  public static final int DEFAULT_MAX_FRAME_SIZE = 64 << 20;
+  /**
+   * The version byte and the 4 byte size
+   */
+  private static final int PREFIX = 5;
+  private final InputStream stream;
+  private final ReadableByteChannel channel;
+  private final int maxFrameSize;
+  private final BosonReader.ReaderCtx ctx = new BosonReader.ReaderCtx();
+  private byte[] frame = new byte[256];
+  private ByteBuffer view = ByteBuffer.wrap(frame);
+  private int length;
+
+  public BosonFrameReader(InputStream stream) {
+    this(stream, DEFAULT_MAX_FRAME_SIZE);
+  }
+
+  public BosonFrameReader(InputStream stream, int maxFrameSize) {
+    this(stream, null, maxFrameSize);
+  }
+
+  public BosonFrameReader(ReadableByteChannel channel) {
+    this(channel, DEFAULT_MAX_FRAME_SIZE);
+  }
+
+  public BosonFrameReader(ReadableByteChannel channel, int maxFrameSize) {
+    this(null, channel, maxFrameSize);
+  }
+
+  private BosonFrameReader(InputStream stream, ReadableByteChannel channel, int maxFrameSize) {
+    if (maxFrameSize < 1) {
+      throw new IllegalArgumentException("Max frame size must be at least 1 byte");
+    }
+    this.stream = stream;
+    this.channel = channel;
+    this.maxFrameSize = maxFrameSize;
+  }
+
+  /**
+   * Read the next frame
+   *
+   * @return true if a frame was read, false if the stream ended where a frame would start
+   * @throws InvalidDataException if the stream ends part way through a frame, a message isn't framed or a frame is
+   *                              larger than the maximum frame size
+   */
+  public boolean nextFrame() {
+    length = 0;
+    try {
+      if (!fill(0, PREFIX, true)) {
+        return false;
+      }
+      if ((frame[0] & BosonWriter.WriterCtx.FRAMED) == 0) {
+        throw new InvalidDataException(format("Message with version byte %s isn't framed", frame[0]), null);
+      }
+      int size = (frame[1] & 0xFF) << 24 | (frame[2] & 0xFF) << 16 | (frame[3] & 0xFF) << 8 | (frame[4] & 0xFF);
+      if (size < 0 || size > maxFrameSize) {
+        throw new InvalidDataException(format("Frame of %s bytes is outside the limit of %s", size, maxFrameSize),
+          null);
+      }
+      int total = PREFIX + size;
+      if (total > frame.length) {
+        byte[] grown = new byte[Math.max(total, Math.min(frame.length << 1, PREFIX + maxFrameSize))];
+        System.arraycopy(frame, 0, grown, 0, PREFIX);
+        frame = grown;
+        view = ByteBuffer.wrap(frame);
+      }
+      fill(PREFIX, total, false);
+      length = total;
+      return true;
+    } catch (IOException e) {
+      throw new InvalidDataException("Unable to read a frame", e);
+    }
+  }
+
+  /**
+   * Decode the current frame
+   *
+   * @return the message in the frame
+   */
+  public <T> T decode() {
+    requireFrame();
+    return BosonReader.decode(new ByteArrayInput(frame, 0, length), ctx);
+  }
+
+  /**
+   * Access the current frame, version byte and size included, without copying it. The buffer is only valid until the
+   * next frame is read.
+   */
+  public ByteBuffer frame() {
+    requireFrame();
+    view.limit(length).position(0);
+    return view;
+  }
+
+  /**
+   * @return the number of bytes in the current frame, version byte and size included, 0 if there isn't one
+   */
+  public int frameSize() {
+    return length;
+  }
+
+  private void requireFrame() {
+    if (length == 0) {
+      throw new IllegalStateException("No frame has been read");
+    }
+  }
+
+  /**
+   * Read bytes [from, to) of the frame
+   *
+   * @param first true if an end of stream before the first byte means there are no more frames
+   * @return false if the stream ended before the first byte and that was allowed
+   */
+  private boolean fill(int from, int to, boolean first) throws IOException {
+    int pos = from;
+    while (pos < to) {
+      int n;
+      if (stream != null) {
+        n = stream.read(frame, pos, to - pos);
+      } else {
+        view.limit(to).position(pos);
+        n = channel.read(view);
+      }
+      if (n < 0) {
+        if (first && pos == from) {
+          return false;
+        }
+        throw new EOFException(format("Stream ended %s bytes into a frame", pos));
+      }
+      pos += n;
+    }
+    return true;
+  }
+}
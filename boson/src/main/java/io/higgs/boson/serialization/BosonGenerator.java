@@ -0,0 +1,455 @@
+package io.higgs.boson.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.ENUM;
+import static io.higgs.boson.BosonType.LIST;
+import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.POLO;
+import static io.higgs.boson.BosonType.SET;
+import static java.lang.String.format;
+
+/**
+ * Writes a message one value at a time, in the style of Jackson's JsonGenerator, so data translated from another
+ * format doesn't have to be built into maps or POLOs first. The bytes written are exactly those {@link BosonWriter}
+ * writes for the equivalent values with the same {@link BosonWriter.WriterCtx} settings.
+ * <p>
+ * Boson writes a container's size before its contents, so every container is started with the number of elements,
+ * entries or fields it will have and {@link #writeEnd()} checks that many were written. A POLO is started with
+ * {@link #writeStartPolo(String, int)} and then has a {@link #writeFieldName(String)} followed by a value for each
+ * field. A map's keys and values are written in turn. The message is complete, and flushed to the output, once its
+ * root value has been written.
+ * <p>
+ * The context is in use until the message is complete. {@link BosonWriter.References#SHARED} isn't supported as it
+ * needs the whole message up front. A generator is not thread safe.
+ */
+public final class BosonGenerator {
+  private final BosonWriter writer;
+  private final BosonWriter.WriterCtx ctx;
+  private final BosonOutput out;
+  private final long start;
+  //back-patched or compressed messages are encoded in memory first, see WriterCtx.stages
+  private final boolean staged;
+  private final long frame;
+  //one entry per open container, indexed by depth - 1
+  private byte[] kinds = new byte[8];
+  /**
+   * Values left to write in each container, POLO field names are counted as values
+   */
+  private long[] remaining = new long[8];
+  private long[] marks = new long[8];
+  private int[] strings = new int[8];
+  private int[] refs = new int[8];
+  private int depth;
+  private boolean complete;
+
+  /**
+   * Write a message into the context's own buffer, see {@link #toByteArray()}
+   */
+  public BosonGenerator(BosonWriter.WriterCtx ctx) {
+    this(ctx, ctx.heap, BosonWriter.getInstance());
+  }
+
+  /**
+   * @param ctx    the context holding the settings to write with, it is reset first
+   * @param out    where to write the message
+   * @param writer the writer to write values given to {@link #writeObject(Object)} with
+   */
+  public BosonGenerator(BosonWriter.WriterCtx ctx, BosonOutput out, BosonWriter writer) {
+    if (ctx.referenceMode == BosonWriter.References.SHARED) {
+      //finding what's shared needs the whole message up front
+      throw new IllegalArgumentException("A generator can only write with references ALL or NONE");
+    }
+    this.writer = writer;
+    this.ctx = ctx;
+    this.out = out;
+    ctx.reset();
+    staged = ctx.stages(out);
+    ctx.buffer = staged ? ctx.heap : out;
+    start = out.position();
+    try {
+      frame = BosonWriter.writeHeader(ctx);
+    } catch (IOException ioe) {
+      throw new InvalidDataException("Serialisation error", ioe);
+    }
+  }
+
+  /**
+   * Stream a message through a fixed size chunk, see {@link StreamOutput}. The stream is flushed once the message is
+   * complete but not closed.
+   */
+  public static BosonGenerator of(BosonWriter.WriterCtx ctx, OutputStream stream) {
+    return new BosonGenerator(ctx, new StreamOutput(stream), BosonWriter.getInstance());
+  }
+
+  /**
+   * Start a POLO, tracked with a reference number unless the context writes untracked POLOs, see
+   * {@link BosonWriter.References}
+   *
+   * @param className  the fully qualified name of the class to read the POLO as
+   * @param fieldCount the number of fields that will be written
+   * @return the POLO's reference number or -1 if it doesn't have one
+   */
+  public int writeStartPolo(String className, int fieldCount) {
+    return writeStartPolo(className, fieldCount, ctx.referenceMode == BosonWriter.References.ALL);
+  }
+
+  /**
+   * @param tracked true to give the POLO a reference number so it can be referred to by {@link #writeReference(int)}
+   * @see #writeStartPolo(String, int)
+   */
+  public int writeStartPolo(String className, int fieldCount, boolean tracked) {
+    beforeValue();
+    try {
+      int stringCount = ctx.strings.size();
+      int ref = tracked ? ctx.reference.getAndIncrement() : -1;
+      //the POLO's own reference, if it has one, counts as assigned within it
+      int refCount = ref < 0 ? ctx.reference.get() : ref;
+      long mark = writer.writePoloHeader(ctx, className, ref, fieldCount);
+      push(POLO.id, (long) fieldCount << 1, mark, stringCount, refCount);
+      return ref;
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeFieldName(String name) {
+    if (depth == 0 || kinds[depth - 1] != POLO.id || remaining[depth - 1] == 0 || (remaining[depth - 1] & 1) != 0) {
+      throw new IllegalStateException(format("A field name can't be written here, expected %s", expected()));
+    }
+    remaining[depth - 1]--;
+    try {
+      writer.writeSymbol(ctx, name);
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeStartList(int size) {
+    writeStart(LIST.id, size, 1, null);
+  }
+
+  public void writeStartSet(int size) {
+    writeStart(SET.id, size, 1, null);
+  }
+
+  /**
+   * @param componentType the fully qualified name of the array's component type
+   */
+  public void writeStartArray(String componentType, int size) {
+    writeStart(ARRAY.id, size, 1, componentType);
+  }
+
+  /**
+   * @param size the number of entries, each written as a key followed by its value
+   */
+  public void writeStartMap(int size) {
+    writeStart(MAP.id, size, 2, null);
+  }
+
+  /**
+   * End the innermost container
+   *
+   * @throws IllegalStateException if fewer values were written than the container was started with
+   */
+  public void writeEnd() {
+    if (depth == 0) {
+      throw new IllegalStateException("There's no container to end");
+    }
+    int top = depth - 1;
+    if (remaining[top] != 0) {
+      throw new IllegalStateException(format("Container ended early, expected %s", expected()));
+    }
+    depth--;
+    try {
+      writer.closeContainer(ctx, marks[top], strings[top], refs[top]);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeByte(byte v) {
+    beforeValue();
+    try {
+      writer.writeByte(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeShort(short v) {
+    beforeValue();
+    try {
+      writer.writeShort(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeInt(int v) {
+    beforeValue();
+    try {
+      writer.writeInt(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeLong(long v) {
+    beforeValue();
+    try {
+      writer.writeLong(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeFloat(float v) {
+    beforeValue();
+    try {
+      writer.writeFloat(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeDouble(double v) {
+    beforeValue();
+    try {
+      writer.writeDouble(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeBoolean(boolean v) {
+    beforeValue();
+    try {
+      writer.writeBoolean(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeChar(char v) {
+    beforeValue();
+    try {
+      writer.writeChar(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  /**
+   * @param v the string, null is written as null
+   */
+  public void writeString(String v) {
+    beforeValue();
+    try {
+      if (v == null) {
+        writer.writeNull(ctx);
+      } else {
+        writer.writeString(ctx, v);
+      }
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  public void writeNull() {
+    beforeValue();
+    try {
+      writer.writeNull(ctx);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  /**
+   * @param v the bytes, null is written as null
+   */
+  public void writeBinary(byte[] v) {
+    beforeValue();
+    try {
+      if (v == null) {
+        writer.writeNull(ctx);
+      } else {
+        writer.writeByteArray(ctx, v);
+      }
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  /**
+   * @param className the fully qualified name of the enum's class
+   * @param value     the constant's name
+   */
+  public void writeEnum(String className, String value) {
+    beforeValue();
+    try {
+      ctx.buffer.writeByte(ENUM.id); //type
+      writer.writeSymbol(ctx, className);
+      writer.writeSymbol(ctx, value);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  /**
+   * Refer to a POLO written earlier in the message
+   *
+   * @param ref the number returned when the POLO was started
+   */
+  public void writeReference(int ref) {
+    if (ref < 0 || ref >= ctx.reference.get()) {
+      throw new IllegalArgumentException(format("No POLO with reference %s has been written", ref));
+    }
+    beforeValue();
+    try {
+      writer.writeReference(ctx, ref);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  /**
+   * Write any value {@link BosonWriter} supports, e.g. a primitive array or a POLO, as the writer would. POLOs
+   * written this way share the message's reference numbers with those started on this generator.
+   */
+  public void writeObject(Object v) {
+    beforeValue();
+    try {
+      writer.write(ctx, v);
+      afterValue();
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  /**
+   * @return true once the message's root value has been written in full
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * @return the number of bytes the message took, once it is complete
+   */
+  public long size() {
+    return out.position() - start;
+  }
+
+  /**
+   * @return a copy of the message written into the context's own buffer
+   */
+  public byte[] toByteArray() {
+    if (!complete || out != ctx.heap) {
+      throw new IllegalStateException("The message is incomplete or wasn't written to the context's buffer");
+    }
+    return ctx.toByteArray();
+  }
+
+  private void writeStart(byte kind, int size, int perElement, String componentType) {
+    beforeValue();
+    try {
+      ctx.buffer.writeByte(kind); //type
+      int stringCount = ctx.strings.size();
+      int refCount = ctx.reference.get();
+      long mark = writer.openContainer(ctx);
+      writer.writeSize(ctx, size);
+      if (componentType != null) {
+        writer.writeSymbol(ctx, componentType);
+      }
+      push(kind, (long) size * perElement, mark, stringCount, refCount);
+    } catch (IOException ioe) {
+      throw error(ioe);
+    }
+  }
+
+  private void push(byte kind, long values, long mark, int stringCount, int refCount) {
+    if (depth == kinds.length) {
+      int n = depth << 1;
+      kinds = Arrays.copyOf(kinds, n);
+      remaining = Arrays.copyOf(remaining, n);
+      marks = Arrays.copyOf(marks, n);
+      strings = Arrays.copyOf(strings, n);
+      refs = Arrays.copyOf(refs, n);
+    }
+    kinds[depth] = kind;
+    remaining[depth] = values;
+    marks[depth] = mark;
+    strings[depth] = stringCount;
+    refs[depth] = refCount;
+    depth++;
+  }
+
+  /**
+   * Account for a value, or the start of a container, about to be written
+   */
+  private void beforeValue() {
+    if (complete) {
+      throw new IllegalStateException("The message is already complete");
+    }
+    if (depth == 0) {
+      return;
+    }
+    int top = depth - 1;
+    if (remaining[top] == 0 || (kinds[top] == POLO.id && (remaining[top] & 1) == 0)) {
+      throw new IllegalStateException(format("A value can't be written here, expected %s", expected()));
+    }
+    remaining[top]--;
+  }
+
+  /**
+   * Complete the message once its root value has been written
+   */
+  private void afterValue() throws IOException {
+    if (depth != 0) {
+      return;
+    }
+    complete = true;
+    try {
+      BosonWriter.closeMessage(ctx, frame);
+      if (staged) {
+        out.write(ctx.heap.array(), 0, ctx.heap.size());
+      }
+      out.flush();
+    } finally {
+      ctx.buffer = ctx.heap;
+    }
+  }
+
+  private String expected() {
+    if (depth == 0) {
+      return complete ? "nothing, the message is complete" : "the root value";
+    }
+    int top = depth - 1;
+    if (remaining[top] == 0) {
+      return "the end of the container";
+    }
+    return kinds[top] == POLO.id && (remaining[top] & 1) == 0 ? "a field name" : "a value";
+  }
+
+  private static InvalidDataException error(IOException ioe) {
+    return new InvalidDataException("Serialisation error", ioe);
+  }
+}
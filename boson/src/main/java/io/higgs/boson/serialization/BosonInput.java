@@ -0,0 +1,116 @@
+package io.higgs.boson.serialization;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A source of encoded Boson data. All multi-byte values are read big-endian, matching {@link BosonOutput}.
+ * Running out of data is reported as an {@link java.io.EOFException} or
+ * {@link java.nio.BufferUnderflowException}.
+ */
+public abstract class BosonInput {
+  public abstract byte readByte() throws IOException;
+
+  public abstract short readShort() throws IOException;
+
+  public abstract int readInt() throws IOException;
+
+  public abstract long readLong() throws IOException;
+
+  public abstract void readFully(byte[] b, int off, int len) throws IOException;
+
+  /**
+   * @return the number of bytes read, or skipped, since the input started
+   */
+  public abstract long position();
+
+  /**
+   * Move to a position previously returned by {@link #position()}. Only inputs over data which can be revisited,
+   * i.e. arrays, buffers and mapped files, support this.
+   */
+  public void seek(long position) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't seek");
+  }
+
+  /**
+   * @return true if this input supports {@link #seek(long)}
+   */
+  public boolean canSeek() {
+    return false;
+  }
+
+  /**
+   * @return the number of bytes left to read, or -1 if the input can't tell, e.g. a stream
+   */
+  public long remaining() {
+    return -1;
+  }
+
+  /**
+   * Advance past n bytes without reading them
+   */
+  public void skipBytes(int n) throws IOException {
+    for (int i = 0; i < n; i++) {
+      readByte();
+    }
+  }
+
+  public char readChar() throws IOException {
+    return (char) readShort();
+  }
+
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  /**
+   * Read length bytes of UTF-8 as a string. Implementations with access to the underlying bytes should decode them
+   * in place, this default copies them out first.
+   */
+  public String readUtf8(int length) throws IOException {
+    byte[] bytes = new byte[length];
+    readFully(bytes, 0, length);
+    return new String(bytes, UTF_8);
+  }
+
+  public void readShorts(short[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = readShort();
+    }
+  }
+
+  public void readChars(char[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = readChar();
+    }
+  }
+
+  public void readInts(int[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = readInt();
+    }
+  }
+
+  public void readLongs(long[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = readLong();
+    }
+  }
+
+  public void readFloats(float[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = readFloat();
+    }
+  }
+
+  public void readDoubles(double[] v) throws IOException {
+    for (int i = 0; i < v.length; i++) {
+      v[i] = readDouble();
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package io.higgs.boson.serialization;
+
+import java.io.IOException;
+
+/**
+ * A sink for encoded Boson data. All multi-byte values are written big-endian, matching
+ * {@link java.io.DataOutputStream} so every implementation produces the same bytes.
+ */
+public abstract class BosonOutput {
+  public abstract void writeByte(int v) throws IOException;
+
+  public abstract void writeShort(int v) throws IOException;
+
+  public abstract void writeInt(int v) throws IOException;
+
+  public abstract void writeLong(long v) throws IOException;
+
+  public abstract void write(byte[] b, int off, int len) throws IOException;
+
+  /**
+   * @return the total number of bytes written to this output
+   */
+  public abstract long position();
+
+  /**
+   * @return true if bytes already written can be overwritten with {@link #patchInt(long, int)}
+   */
+  public boolean canPatch() {
+    return false;
+  }
+
+  /**
+   * Overwrite 4 bytes written earlier, used to fill in headers whose values are only known once what follows them
+   * has been written.
+   *
+   * @param position the position, as given by {@link #position()}, the int was written at
+   * @param v        the value to write
+   */
+  public void patchInt(long position, int v) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't overwrite bytes already written");
+  }
+
+  /**
+   * Push any buffered bytes to the underlying destination, called once a message has been written.
+   */
+  public void flush() throws IOException {
+  }
+
+  /**
+   * Write an unsigned LEB128 varint, 7 bits per byte with the high bit set on all but the last byte.
+   */
+  public void writeVarInt(int v) throws IOException {
+    while ((v & ~0x7F) != 0) {
+      writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    writeByte(v);
+  }
+
+  /**
+   * Write an unsigned 64 bit LEB128 varint.
+   */
+  public void writeVarLong(long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      writeByte((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    writeByte((int) v);
+  }
+
+  public void writeShorts(short[] v) throws IOException {
+    for (short x : v) {
+      writeShort(x);
+    }
+  }
+
+  public void writeChars(char[] v) throws IOException {
+    for (char x : v) {
+      writeShort(x);
+    }
+  }
+
+  public void writeInts(int[] v) throws IOException {
+    for (int x : v) {
+      writeInt(x);
+    }
+  }
+
+  public void writeLongs(long[] v) throws IOException {
+    for (long x : v) {
+      writeLong(x);
+    }
+  }
+
+  public void writeFloats(float[] v) throws IOException {
+    for (float x : v) {
+      writeInt(Float.floatToIntBits(x));
+    }
+  }
+
+  public void writeDoubles(double[] v) throws IOException {
+    for (double x : v) {
+      writeLong(Double.doubleToLongBits(x));
+    }
+  }
+
+  public void writeChar(int v) throws IOException {
+    writeShort(v);
+  }
+
+  public void writeFloat(float v) throws IOException {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  public void writeDouble(double v) throws IOException {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  /**
+   * Write a string as UTF-8 without its length. Implementations should encode straight into their own storage,
+   * this default writes a byte at a time so nothing is allocated.
+   *
+   * @param s             the string to write
+   * @param encodedLength the number of bytes the string encodes to
+   */
+  public void writeUtf8(String s, int encodedLength) throws IOException {
+    int len = s.length();
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        writeByte(c);
+      } else if (c < 0x800) {
+        writeByte(0xC0 | (c >> 6));
+        writeByte(0x80 | (c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        writeByte(0xE0 | (c >> 12));
+        writeByte(0x80 | ((c >> 6) & 0x3F));
+        writeByte(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, s.charAt(++i));
+        writeByte(0xF0 | (cp >> 18));
+        writeByte(0x80 | ((cp >> 12) & 0x3F));
+        writeByte(0x80 | ((cp >> 6) & 0x3F));
+        writeByte(0x80 | (cp & 0x3F));
+      } else {
+        writeByte('?');
+      }
+    }
+  }
+}
@@ -0,0 +1,505 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.BosonType;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.BOOLEAN;
+import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.COMPACT_POLO;
+import static io.higgs.boson.BosonType.DOUBLE;
+import static io.higgs.boson.BosonType.FLOAT;
+import static io.higgs.boson.BosonType.INT;
+import static io.higgs.boson.BosonType.LONG;
+import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.PACKED_ARRAY;
+import static io.higgs.boson.BosonType.POLO;
+import static io.higgs.boson.BosonType.SHORT;
+import static io.higgs.boson.BosonType.STRING;
+import static java.lang.String.format;
+
+/**
+ * Reads a message one token at a time, in the style of Jackson's JsonParser, without building the values it holds.
+ * <p>
+ * A POLO is {@link Token#START_POLO}, then a {@link Token#FIELD_NAME} followed by the field's value for each field,
+ * then {@link Token#END_POLO}. A map's entries are its keys and values in turn between {@link Token#START_MAP} and
+ * {@link Token#END_MAP}, {@link #isMapKey()} tells them apart. Lists, sets and arrays, packed or not, are their
+ * elements between {@link Token#START_LIST} and {@link Token#END_LIST}. A reference to a POLO is only its number, a
+ * parser doesn't keep what it has read so it can't resolve it. Dates and times are read as objects.
+ * <p>
+ * Containers start with their size so {@link #getSize()} is known as soon as one starts, and
+ * {@link #skipChildren()} jumps over a container in one go when the message has sized containers.
+ * A parser is not thread safe.
+ */
+public final class BosonParser {
+  public enum Token {
+    START_POLO,
+    END_POLO,
+    START_MAP,
+    END_MAP,
+    START_LIST,
+    END_LIST,
+    FIELD_NAME,
+    VALUE_NUMBER_INT,
+    VALUE_NUMBER_FLOAT,
+    VALUE_TRUE,
+    VALUE_FALSE,
+    VALUE_NULL,
+    /**
+     * A string, char or enum
+     */
+    VALUE_STRING,
+    VALUE_BYTES,
+    /**
+     * A reference to a POLO read earlier, see {@link #getReference()}
+     */
+    VALUE_REFERENCE,
+    /**
+     * A value, such as a date, which is read as an object, see {@link #getEmbeddedObject()}
+     */
+    VALUE_EMBEDDED_OBJECT
+  }
+
+  private final BosonInput input;
+  private final BosonReader.ReaderCtx ctx;
+  private final BosonReader reader;
+  //one entry per open container, indexed by depth - 1
+  private byte[] kinds = new byte[8];
+  /**
+   * Tokens left in each container not counting its end, POLO field names and map keys are counted as values
+   */
+  private long[] remaining = new long[8];
+  private byte[] components = new byte[8];
+  private String[] names = new String[8];
+  //a sized container's end and the strings and references it defines, so the rest of it can be jumped over
+  private long[] ends = new long[8];
+  private int[] stringBase = new int[8];
+  private int[] stringDefs = new int[8];
+  private int[] refBase = new int[8];
+  private int[] refDefs = new int[8];
+  private int depth;
+  private boolean started;
+  //the current token and its value
+  private Token token;
+  private BosonType type;
+  private long longValue;
+  private double doubleValue;
+  private String text;
+  private String className;
+  private byte[] bytes;
+  private Object embedded;
+  private int reference;
+  private int size;
+  private boolean key;
+
+  /**
+   * @param input  the message
+   * @param ctx    the context to read with, only its string table and format details are used
+   * @param reader the reader to read embedded objects with
+   */
+  public BosonParser(BosonInput input, BosonReader.ReaderCtx ctx, BosonReader reader) {
+    this.ctx = ctx;
+    this.reader = reader;
+    try {
+      this.input = BosonReader.open(ctx, input, false);
+    } catch (Exception e) {
+      throw new InvalidDataException("Unable to read the message's version", e);
+    }
+  }
+
+  public static BosonParser of(byte[] data) {
+    return new BosonParser(new ByteArrayInput(data), new BosonReader.ReaderCtx(), BosonReader.getInstance());
+  }
+
+  /**
+   * Parse the message starting at the buffer's position, the buffer itself is left untouched
+   */
+  public static BosonParser of(ByteBuffer data) {
+    return new BosonParser(new ByteBufferInput(data.duplicate()), new BosonReader.ReaderCtx(),
+      BosonReader.getInstance());
+  }
+
+  /**
+   * Parse a message from a stream, only the bytes of the message are read from it. The stream isn't closed.
+   */
+  public static BosonParser of(InputStream data) {
+    return new BosonParser(new DataInputAdapter(new DataInputStream(data)), new BosonReader.ReaderCtx(),
+      BosonReader.getInstance());
+  }
+
+  /**
+   * @return the next token or null once the whole message has been read
+   */
+  public Token nextToken() {
+    try {
+      token = advance();
+      return token;
+    } catch (Exception e) {
+      throw new InvalidDataException(format("Unable to read the token after %s", token), e);
+    }
+  }
+
+  /**
+   * @return the current token, null before the first and after the last
+   */
+  public Token getCurrentToken() {
+    return token;
+  }
+
+  /**
+   * If the current token starts a container move to its end, so the next token is the one after the container.
+   * Does nothing for any other token.
+   *
+   * @return this parser
+   */
+  public BosonParser skipChildren() {
+    if (token != Token.START_POLO && token != Token.START_MAP && token != Token.START_LIST) {
+      return this;
+    }
+    try {
+      int top = depth - 1;
+      byte kind = kinds[top];
+      if (kind == PACKED_ARRAY.id) {
+        BosonReader.skipBytes(input, remaining[top] * BosonReader.packedWidth(components[top]));
+      } else if (ctx.sized && ctx.stringCount() - stringBase[top] == stringDefs[top]) {
+        //nothing left in the container is needed to read what follows it
+        BosonReader.skipBytes(input, ends[top] - input.position());
+        ctx.skipReferences(refDefs[top] - (ctx.referenceCount() - refBase[top]));
+      } else {
+        boolean polo = kind == POLO.id || kind == COMPACT_POLO.id;
+        for (long left = remaining[top]; left > 0; left--) {
+          if (polo && (left & 1) == 0) {
+            reader.skipString(ctx); //field name
+          } else {
+            reader.skip(ctx, input.readByte());
+          }
+        }
+      }
+      remaining[top] = 0;
+      token = advance();
+    } catch (Exception e) {
+      throw new InvalidDataException(format("Unable to skip the %s", type), e);
+    }
+    return this;
+  }
+
+  /**
+   * @return the type of the current value or container, null for a field name or when there's no current token.
+   * All string encodings are {@link BosonType#STRING}, the elements of a packed array have its component type.
+   */
+  public BosonType getCurrentType() {
+    return type;
+  }
+
+  /**
+   * @return the name of the POLO field the current token is, or is the value of, null if it isn't in a POLO
+   */
+  public String getCurrentName() {
+    int frame = token == Token.START_POLO || token == Token.START_MAP || token == Token.START_LIST ? depth - 2
+                  : depth - 1;
+    return frame >= 0 && (kinds[frame] == POLO.id || kinds[frame] == COMPACT_POLO.id) ? names[frame] : null;
+  }
+
+  /**
+   * @return true if the current token is, or starts, the key of a map entry
+   */
+  public boolean isMapKey() {
+    return key;
+  }
+
+  /**
+   * @return the number of elements, entries or fields of the container the current token starts, -1 for other tokens
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return the reference number of the POLO the current token starts or refers to, -1 if it has none
+   */
+  public int getReference() {
+    return reference;
+  }
+
+  /**
+   * @return the class of the POLO the current token starts, the component type of an array or the class of an enum
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * @return the field name, string, char or enum value, the text of a number or boolean or null for other tokens
+   */
+  public String getText() {
+    if (token == null) {
+      return null;
+    }
+    switch (token) {
+      case FIELD_NAME:
+      case VALUE_STRING:
+        return text;
+      case VALUE_NUMBER_INT:
+        return String.valueOf(longValue);
+      case VALUE_NUMBER_FLOAT:
+        return type == FLOAT ? String.valueOf((float) doubleValue) : String.valueOf(doubleValue);
+      case VALUE_TRUE:
+        return "true";
+      case VALUE_FALSE:
+        return "false";
+      case VALUE_EMBEDDED_OBJECT:
+        return String.valueOf(embedded);
+      default:
+        return null;
+    }
+  }
+
+  public int getIntValue() {
+    long v = getLongValue();
+    if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+      throw new InvalidDataException(format("%s is out of the range of an int", v), null);
+    }
+    return (int) v;
+  }
+
+  public long getLongValue() {
+    if (token == Token.VALUE_NUMBER_INT) {
+      return longValue;
+    }
+    if (token == Token.VALUE_NUMBER_FLOAT) {
+      return (long) doubleValue;
+    }
+    throw notA("number");
+  }
+
+  public float getFloatValue() {
+    return (float) getDoubleValue();
+  }
+
+  public double getDoubleValue() {
+    if (token == Token.VALUE_NUMBER_FLOAT) {
+      return doubleValue;
+    }
+    if (token == Token.VALUE_NUMBER_INT) {
+      return longValue;
+    }
+    throw notA("number");
+  }
+
+  public boolean getBooleanValue() {
+    if (token == Token.VALUE_TRUE || token == Token.VALUE_FALSE) {
+      return token == Token.VALUE_TRUE;
+    }
+    throw notA("boolean");
+  }
+
+  public byte[] getBinaryValue() {
+    if (token == Token.VALUE_BYTES) {
+      return bytes;
+    }
+    throw notA("byte array");
+  }
+
+  public Object getEmbeddedObject() {
+    if (token == Token.VALUE_EMBEDDED_OBJECT) {
+      return embedded;
+    }
+    throw notA("embedded object");
+  }
+
+  private IllegalStateException notA(String what) {
+    return new IllegalStateException(format("The current token, %s, is not a %s", token, what));
+  }
+
+  private Token advance() throws Exception {
+    text = null;
+    className = null;
+    bytes = null;
+    embedded = null;
+    reference = -1;
+    size = -1;
+    key = false;
+    if (depth == 0) {
+      if (started) {
+        type = null;
+        return null;
+      }
+      started = true;
+      return value(input.readByte());
+    }
+    int top = depth - 1;
+    byte kind = kinds[top];
+    if (remaining[top] == 0) {
+      depth--;
+      type = BosonType.byId(kind);
+      return kind == POLO.id || kind == COMPACT_POLO.id ? Token.END_POLO : kind == MAP.id ? Token.END_MAP
+                                                                                      : Token.END_LIST;
+    }
+    long left = remaining[top]--;
+    if (kind == PACKED_ARRAY.id) {
+      return packed(components[top]);
+    } else if (kind == POLO.id || kind == COMPACT_POLO.id) {
+      if ((left & 1) == 0) {
+        names[top] = reader.readString(ctx, false, (byte) 0);
+        text = names[top];
+        type = null;
+        return Token.FIELD_NAME;
+      }
+    } else if (kind == MAP.id) {
+      key = (left & 1) == 0;
+    }
+    return value(input.readByte());
+  }
+
+  /**
+   * Read a value whose type byte has just been read
+   */
+  private Token value(byte id) throws Exception {
+    type = BosonType.byId(id);
+    switch (type) {
+      case BYTE:
+        longValue = input.readByte();
+        return Token.VALUE_NUMBER_INT;
+      case SHORT:
+        longValue = input.readShort();
+        return Token.VALUE_NUMBER_INT;
+      case INT:
+        longValue = reader.readInt(ctx);
+        return Token.VALUE_NUMBER_INT;
+      case LONG:
+        longValue = reader.readLong(ctx);
+        return Token.VALUE_NUMBER_INT;
+      case FLOAT:
+        doubleValue = input.readFloat();
+        return Token.VALUE_NUMBER_FLOAT;
+      case DOUBLE:
+        doubleValue = input.readDouble();
+        return Token.VALUE_NUMBER_FLOAT;
+      case BOOLEAN:
+        return input.readByte() != 0 ? Token.VALUE_TRUE : Token.VALUE_FALSE;
+      case CHAR:
+        text = String.valueOf(input.readChar());
+        return Token.VALUE_STRING;
+      case NULL:
+        return Token.VALUE_NULL;
+      case STRING:
+      case STRING_DEF:
+      case STRING_REF:
+        type = STRING;
+        text = reader.readString(ctx, true, id);
+        return Token.VALUE_STRING;
+      case ENUM:
+        className = reader.readString(ctx, false, (byte) 0);
+        text = reader.readString(ctx, false, (byte) 0);
+        return Token.VALUE_STRING;
+      case BYTE_ARRAY:
+        bytes = new byte[reader.readSize(ctx)];
+        input.readFully(bytes, 0, bytes.length);
+        return Token.VALUE_BYTES;
+      case REFERENCE:
+        reference = reader.readSize(ctx);
+        return Token.VALUE_REFERENCE;
+      case LIST:
+      case SET:
+        open(id);
+        start(reader.readSize(ctx), 1);
+        return Token.START_LIST;
+      case ARRAY:
+        open(id);
+        start(reader.readSize(ctx), 1);
+        className = reader.readString(ctx, false, (byte) 0);
+        return Token.START_LIST;
+      case PACKED_ARRAY:
+        byte component = input.readByte();
+        BosonReader.packedWidth(component); //fails fast on a component which can't be packed
+        open(id);
+        components[depth - 1] = component;
+        start(reader.readSize(ctx), 1);
+        return Token.START_LIST;
+      case MAP:
+        open(id);
+        start(reader.readSize(ctx), 2);
+        return Token.START_MAP;
+      case POLO:
+      case COMPACT_POLO:
+        open(id);
+        if (id == POLO.id) {
+          reference = reader.readSize(ctx);
+          //only the number is kept, so it lines up with references assigned in containers which are skipped
+          ctx.addReference(reference, null);
+        }
+        className = reader.readString(ctx, false, (byte) 0);
+        start(reader.readSize(ctx), 2);
+        return Token.START_POLO;
+      default:
+        embedded = reader.readType(ctx, id);
+        return Token.VALUE_EMBEDDED_OBJECT;
+    }
+  }
+
+  private Token packed(byte component) throws Exception {
+    type = BosonType.byId(component);
+    if (component == INT.id) {
+      longValue = input.readInt();
+    } else if (component == LONG.id) {
+      longValue = input.readLong();
+    } else if (component == SHORT.id) {
+      longValue = input.readShort();
+    } else if (component == DOUBLE.id) {
+      doubleValue = input.readDouble();
+      return Token.VALUE_NUMBER_FLOAT;
+    } else if (component == FLOAT.id) {
+      doubleValue = input.readFloat();
+      return Token.VALUE_NUMBER_FLOAT;
+    } else if (component == CHAR.id) {
+      text = String.valueOf(input.readChar());
+      return Token.VALUE_STRING;
+    } else if (component == BOOLEAN.id) {
+      return input.readByte() != 0 ? Token.VALUE_TRUE : Token.VALUE_FALSE;
+    }
+    return Token.VALUE_NUMBER_INT;
+  }
+
+  /**
+   * Push a container whose type byte has just been read, reading its header if it has one
+   */
+  private void open(byte kind) throws Exception {
+    if (depth == kinds.length) {
+      int n = depth << 1;
+      kinds = Arrays.copyOf(kinds, n);
+      remaining = Arrays.copyOf(remaining, n);
+      components = Arrays.copyOf(components, n);
+      names = Arrays.copyOf(names, n);
+      ends = Arrays.copyOf(ends, n);
+      stringBase = Arrays.copyOf(stringBase, n);
+      stringDefs = Arrays.copyOf(stringDefs, n);
+      refBase = Arrays.copyOf(refBase, n);
+      refDefs = Arrays.copyOf(refDefs, n);
+    }
+    int top = depth++;
+    kinds[top] = kind;
+    if (ctx.sized && kind != PACKED_ARRAY.id) {
+      stringBase[top] = ctx.stringCount();
+      refBase[top] = ctx.referenceCount();
+      int length = input.readInt();
+      stringDefs[top] = input.readInt();
+      refDefs[top] = input.readInt();
+      if (length < 0 || stringDefs[top] < 0 || refDefs[top] < 0) {
+        throw new InvalidDataException(format("Corrupt container header at %s", input.position()), null);
+      }
+      ends[top] = input.position() + length;
+    }
+  }
+
+  /**
+   * @param perElement the number of tokens, not counting containers' contents, each element takes
+   */
+  private void start(int elements, int perElement) {
+    size = elements;
+    remaining[depth - 1] = (long) elements * perElement;
+  }
+}
@@ -13,28 +13,34 @@ import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ShortNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import io.higgs.boson.BosonType;
 import io.higgs.core.reflect.ReflectionUtil;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInput;
-import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Period;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +50,7 @@ import static io.higgs.boson.BosonType.BOOLEAN;
 import static io.higgs.boson.BosonType.BYTE;
 import static io.higgs.boson.BosonType.BYTE_ARRAY;
 import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.COMPACT_POLO;
 import static io.higgs.boson.BosonType.DATE;
 import static io.higgs.boson.BosonType.DOUBLE;
 import static io.higgs.boson.BosonType.DURATION;
@@ -64,16 +71,17 @@ import static io.higgs.boson.BosonType.LOCAL_DATETIME;
 import static io.higgs.boson.BosonType.LONG;
 import static io.higgs.boson.BosonType.MAP;
 import static io.higgs.boson.BosonType.NULL;
+import static io.higgs.boson.BosonType.PACKED_ARRAY;
 import static io.higgs.boson.BosonType.PERIOD;
 import static io.higgs.boson.BosonType.POLO;
 import static io.higgs.boson.BosonType.REFERENCE;
 import static io.higgs.boson.BosonType.SET;
 import static io.higgs.boson.BosonType.SHORT;
 import static io.higgs.boson.BosonType.STRING;
+import static io.higgs.boson.BosonType.STRING_DEF;
+import static io.higgs.boson.BosonType.STRING_REF;
 import static io.higgs.core.reflect.ReflectionUtil.classOf;
-import static io.higgs.core.reflect.ReflectionUtil.getAllFields;
 import static java.lang.String.format;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A reader for data generated by {@link BosonWriter}
@@ -82,15 +90,72 @@ public class BosonReader {
   private static final String invalidMsgStr = "BosonReader tried to read additional data from an unreadable buffer. " +
                                                 "Possible data corruption.";
   private static final Logger log = LoggerFactory.getLogger(BosonReader.class);
+  private static final TypeReader[] READERS = readers();
   private static final BosonReader instance = new BosonReader();
+  /**
+   * How much of a packed array read from a stream is allocated up front, see {@link #readGrowing(BosonInput, long)}
+   */
+  private static final int GROWING_CHUNK = 1 << 16;
+
+  /**
+   * Reads the payload of a value whose type byte has already been read
+   */
+  @FunctionalInterface
+  private interface TypeReader {
+    Object read(BosonReader reader, ReaderCtx ctx, byte type) throws Exception;
+  }
 
   public static class ReaderCtx {
+    /**
+     * The largest payload a compressed message is inflated to unless another limit is given, a larger size is taken
+     * to be corrupt or malicious
+     */
+    public static final int DEFAULT_MAX_INFLATED_SIZE = 64 << 20;
     public boolean readPoloAsMap;
-    byte version = BosonWriter.WriterCtx.version;
+    /**
+     * The paths selected by {@link #project(Collection)}, null to read everything
+     */
+    private Projection paths;
+    /**
+     * The class to read the message's root POLO as, see {@link #target(Class)}
+     */
+    private Class<?> target;
+    /**
+     * The selection in effect for the values currently being read, null if everything is selected
+     */
+    private Projection projection;
+    /**
+     * The class the next POLO is expected to be read as, taken by the POLO as soon as it is read
+     */
+    private Class<?> expected;
+    byte version = BosonWriter.WriterCtx.VERSION_1;
+    /**
+     * True if containers start with a header giving their size, see {@link BosonWriter.WriterCtx#sizedContainers}
+     */
+    boolean sized;
     private ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    private IdentityHashMap<Integer, Object> references = new IdentityHashMap<>();
+    /**
+     * Objects read so far, indexed by the reference number the writer gave them
+     */
+    private Object[] references = new Object[16];
+    private int referenceCount;
+    /**
+     * Where each POLO starts, indexed by reference number, offset + 1 so 0 means not seen. Only kept when reading
+     * through a {@link BosonView}, which skips most POLOs and reads those it later finds references to on demand.
+     */
+    private long[] poloOffsets;
+    private int poloCount;
+    /**
+     * Position of the last string table definition added. A view can revisit bytes and must not define a string twice
+     */
+    private long lastStringDef = -1;
+    private final List<String> strings = new ArrayList<>();
+    private int maxInflatedSize = DEFAULT_MAX_INFLATED_SIZE;
+    //reused between compressed messages, the payload as read and as inflated
+    private byte[] deflated;
+    private byte[] inflated;
     private ObjectMapper mapper;
-    private DataInput buf;
+    private BosonInput buf;
     //private Enhancer enhancer = new Enhancer();
 
     public ReaderCtx() {
@@ -100,6 +165,162 @@ public class BosonReader {
     public ReaderCtx(final ObjectMapper mapper) {
       this.mapper = mapper;
     }
+
+    /**
+     * Only read the values at the given dot paths, e.g. "customer.id", of POLOs (including those read as maps) and
+     * maps. The value of every other field or key is skipped without being built. Lists, sets and arrays don't
+     * narrow the selection, "lines.sku" selects the sku of every element of lines.
+     * <p>
+     * When the message is read from a byte array or buffer a reference to a POLO which was skipped goes back and
+     * reads it, otherwise such references read as null.
+     *
+     * @param paths the paths to keep, null or empty to read everything
+     * @return this context
+     */
+    public ReaderCtx project(Collection<String> paths) {
+      this.paths = paths == null || paths.isEmpty() ? null : Projection.of(paths);
+      return this;
+    }
+
+    /**
+     * Read the message's root POLO as the given class regardless of the class it was written from, usually a class
+     * with just the fields a consumer needs. The values of fields the target doesn't have are skipped. Nested POLOs
+     * are read as the declared type of their field when the class they were written from isn't available or isn't
+     * assignable to it.
+     *
+     * @param target the class to read the root as, null to use the class named in the message
+     * @return this context
+     */
+    public ReaderCtx target(Class<?> target) {
+      this.target = target;
+      return this;
+    }
+
+    /**
+     * @param maxInflatedSize the largest payload, in bytes, a compressed message may inflate to, see
+     *                        {@link BosonWriter.WriterCtx#compressionThreshold(int)}
+     * @return this context
+     */
+    public ReaderCtx maxInflatedSize(int maxInflatedSize) {
+      if (maxInflatedSize < 0) {
+        throw new IllegalArgumentException("Max inflated size can't be negative");
+      }
+      this.maxInflatedSize = maxInflatedSize;
+      return this;
+    }
+
+    boolean projecting() {
+      return paths != null || target != null;
+    }
+
+    /**
+     * Record an object so later references to it can be resolved. The writer numbers objects one after another in
+     * the order they are written so ref is always the next free slot. Negative refs, i.e. compact POLOs, are ignored.
+     */
+    void addReference(int ref, Object instance) {
+      if (ref < 0) {
+        return;
+      }
+      if (poloOffsets != null) {
+        //a view reads POLOs out of order, it has already checked the ref when recording where the POLO starts
+        if (ref >= references.length) {
+          references = Arrays.copyOf(references, Math.max(ref + 1, references.length << 1));
+        }
+        references[ref] = instance;
+        referenceCount = Math.max(referenceCount, ref + 1);
+        return;
+      }
+      if (ref != referenceCount) {
+        throw new InvalidDataException(format("Expected reference %s but found %s", referenceCount, ref), null);
+      }
+      if (ref == references.length) {
+        references = Arrays.copyOf(references, ref << 1);
+      }
+      references[referenceCount++] = instance;
+    }
+
+    Object reference(int ref) {
+      if (poloOffsets != null && ref >= 0 && ref < poloCount) {
+        //null if the POLO was skipped and has to be read from its offset
+        return ref < references.length ? references[ref] : null;
+      }
+      if (ref < 0 || ref >= referenceCount) {
+        throw new InvalidDataException(format("Reference %s has not been read, only %s objects are known",
+          ref, referenceCount
+        ), null);
+      }
+      return references[ref];
+    }
+
+    /**
+     * Account for the references assigned within a container which was skipped, references to them read as null
+     */
+    void skipReferences(int count) {
+      for (int i = 0; i < count; i++) {
+        addReference(referenceCount, null);
+      }
+    }
+
+    int referenceCount() {
+      return referenceCount;
+    }
+
+    int stringCount() {
+      return strings.size();
+    }
+
+    void clearReferences() {
+      Arrays.fill(references, 0, Math.min(referenceCount, references.length), null);
+      referenceCount = 0;
+      poloOffsets = null;
+      poloCount = 0;
+      lastStringDef = -1;
+    }
+
+    /**
+     * Record where a POLO starts when reading through a view
+     *
+     * @param ref    the POLO's reference number
+     * @param offset the position of the POLO's type byte
+     */
+    void recordPolo(int ref, long offset) {
+      //every POLO takes at least 3 bytes so a ref beyond the offset is corrupt, this bounds the table's growth
+      if (ref < 0 || ref > offset) {
+        throw new InvalidDataException(format("Invalid reference %s for a POLO at %s", ref, offset), null);
+      }
+      if (ref >= poloOffsets.length) {
+        poloOffsets = Arrays.copyOf(poloOffsets, Math.max(ref + 1, poloOffsets.length << 1));
+      }
+      poloOffsets[ref] = offset + 1;
+      poloCount = Math.max(poloCount, ref + 1);
+    }
+
+    /**
+     * @return the POLO with the given reference if it has been read, null otherwise
+     */
+    Object referenceIfRead(int ref) {
+      return ref >= 0 && ref < referenceCount && ref < references.length ? references[ref] : null;
+    }
+
+    long poloOffset(int ref) {
+      long offset = ref >= 0 && ref < poloCount ? poloOffsets[ref] : 0;
+      if (offset == 0) {
+        throw new InvalidDataException(format("Reference %s is to a POLO which hasn't been seen", ref), null);
+      }
+      return offset - 1;
+    }
+
+    /**
+     * Add a string to the message's string table
+     *
+     * @param at the position the definition was read from, only used by views
+     */
+    void defineString(String str, long at) {
+      if (poloOffsets == null || at > lastStringDef) {
+        strings.add(str);
+        lastStringDef = at;
+      }
+    }
   }
 
   protected BosonReader() {
@@ -114,12 +335,70 @@ public class BosonReader {
   }
 
   public static <T> T decode(byte[] data, ReaderCtx ctx) {
-    ctx.buf = new DataInputStream(new ByteArrayInputStream(data));
-    return decode(ctx);
+    return decode(new ByteArrayInput(data), ctx);
+  }
+
+  /**
+   * Decode a message into the given class, only the fields it declares are read, see {@link ReaderCtx#target(Class)}
+   */
+  public static <T> T decode(byte[] data, Class<T> target) {
+    return decode(data, new ReaderCtx().target(target));
+  }
+
+  /**
+   * Decode only the values at the given dot paths, see {@link ReaderCtx#project(Collection)}
+   */
+  public static <T> T decode(byte[] data, Collection<String> paths) {
+    return decode(data, new ReaderCtx().project(paths));
+  }
+
+  /**
+   * Decode every message of a batch written by {@link BosonWriter#writeBatch(Iterable, BosonWriter.WriterCtx,
+   * BosonWriter)}, use {@link BosonBatch} to decode them one at a time
+   */
+  public static <T> List<T> decodeBatch(byte[] data) {
+    BosonBatch<T> batch = BosonBatch.of(data);
+    List<T> messages = new ArrayList<>(batch.size());
+    for (T msg : batch) {
+      messages.add(msg);
+    }
+    return messages;
+  }
+
+  /**
+   * Decode a message starting at the buffer's position, which is left just after the message.
+   */
+  public static <T> T decode(ByteBuffer data) {
+    return decode(data, new ReaderCtx());
+  }
+
+  public static <T> T decode(ByteBuffer data, ReaderCtx ctx) {
+    return decode(new ByteBufferInput(data), ctx);
+  }
+
+  /**
+   * Decode a file written by {@link BosonWriter#encode(Object, Path)}. The file is memory mapped, in segments if it
+   * is larger than 2GB, and read in place so it is never copied onto the heap as a whole.
+   */
+  public static <T> T decode(Path file) {
+    return decode(file, new ReaderCtx());
+  }
+
+  public static <T> T decode(Path file, ReaderCtx ctx) {
+    MappedInput input;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      input = MappedInput.map(channel);
+    } catch (IOException e) {
+      throw new InvalidDataException(format("Unable to map %s", file), e);
+    }
+    return decode(input, ctx);
   }
 
   public static <T> T decode(DataInput input) {
-    ReaderCtx ctx = new ReaderCtx();
+    return decode(new DataInputAdapter(input), new ReaderCtx());
+  }
+
+  public static <T> T decode(BosonInput input, ReaderCtx ctx) {
     ctx.buf = input;
     return decode(ctx);
   }
@@ -130,20 +409,96 @@ public class BosonReader {
 
   public static <T> T decode(ReaderCtx ctx, BosonReader reader) {
     try {
-      byte dataVersion = ctx.buf.readByte();
-      if (ctx.version != dataVersion) {
-        throw new UnsupportedEncodingException(format(
-          "Data version %s is not compatible with this reader which can only ready version %s of boson data",
-          dataVersion, ctx.version
-        ));
-      }
-      Object obj = reader.readType(ctx);
+      //skipped POLOs can be gone back to if they are referenced later, as long as the input can seek
+      open(ctx, ctx.buf, ctx.projecting() && ctx.buf.canSeek());
+      Object obj = reader.readMessage(ctx);
       return (T) obj;
     } catch (Exception ioe) {
       throw new InvalidDataException(invalidMsgStr, ioe);
     }
   }
 
+  /**
+   * Start reading a message, the context is reset and the version byte read
+   *
+   * @param seekable true if the message will be read out of order, i.e. by a {@link BosonView}
+   * @return the input to read the rest of the message from, the payload inflated if it was compressed
+   */
+  static BosonInput open(ReaderCtx ctx, BosonInput input, boolean seekable) throws Exception {
+    return open(ctx, input, seekable, false);
+  }
+
+  /**
+   * @param batch true if the bytes must be a batch, false if they must be a single message
+   */
+  static BosonInput open(ReaderCtx ctx, BosonInput input, boolean seekable, boolean batch) throws Exception {
+    ctx.buf = input;
+    ctx.strings.clear();
+    ctx.clearReferences();
+    if (seekable) {
+      ctx.poloOffsets = new long[16];
+    }
+    byte header = input.readByte();
+    //the low bits are the version, the high bits flag optional format features
+    byte dataVersion = (byte) (header & 0x0F);
+    int flags = header & 0xF0;
+    if ((dataVersion != BosonWriter.WriterCtx.VERSION_1 && dataVersion != BosonWriter.WriterCtx.VERSION_2)
+          || (flags & ~(BosonWriter.WriterCtx.SIZED_CONTAINERS | BosonWriter.WriterCtx.FRAMED
+          | BosonWriter.WriterCtx.BATCH | BosonWriter.WriterCtx.COMPRESSED)) != 0) {
+      throw new UnsupportedEncodingException(format(
+        "Data version %s is not compatible with this reader which can only read versions %s and %s of boson data",
+        header, BosonWriter.WriterCtx.VERSION_1, BosonWriter.WriterCtx.VERSION_2
+      ));
+    }
+    ctx.version = dataVersion;
+    if (((flags & BosonWriter.WriterCtx.BATCH) != 0) != batch) {
+      throw new InvalidDataException(batch ? "Not a batch, read it with BosonReader"
+        : "The data is a batch of messages, read it with BosonBatch", null);
+    }
+    ctx.sized = (flags & BosonWriter.WriterCtx.SIZED_CONTAINERS) != 0;
+    int prefix = 1;
+    if ((flags & BosonWriter.WriterCtx.FRAMED) != 0) {
+      //the size is only needed to split a stream into messages, see BosonFrameReader
+      if (input.readInt() < 0) {
+        throw new InvalidDataException("Negative message size, possible data corruption", null);
+      }
+      prefix += 4;
+    }
+    if ((flags & BosonWriter.WriterCtx.COMPRESSED) != 0) {
+      ctx.buf = inflate(ctx, input, prefix);
+    }
+    return ctx.buf;
+  }
+
+  /**
+   * Inflate a compressed payload into a buffer owned by the context. The payload is preceded by as many unused bytes
+   * as the message's version byte and size take up, so positions within it, e.g. a batch's offsets, are the same as
+   * if it had never been compressed.
+   */
+  private static BosonInput inflate(ReaderCtx ctx, BosonInput input, int prefix) throws Exception {
+    int size = input.readInt();
+    int length = input.readInt();
+    //a payload is only compressed if that makes it smaller
+    if (size < 0 || length < 0 || length >= size) {
+      throw new InvalidDataException(format("Corrupt compressed payload sizes %s and %s", size, length), null);
+    }
+    if (size > ctx.maxInflatedSize) {
+      throw new InvalidDataException(format("Compressed payload of %s bytes is over the limit of %s", size,
+        ctx.maxInflatedSize), null);
+    }
+    if (ctx.deflated == null || ctx.deflated.length < length) {
+      ctx.deflated = new byte[length];
+    }
+    input.readFully(ctx.deflated, 0, length);
+    if (ctx.inflated == null || ctx.inflated.length < prefix + size) {
+      ctx.inflated = new byte[prefix + size];
+    }
+    Compression.inflate(ctx.deflated, 0, length, ctx.inflated, prefix, size);
+    ByteArrayInput payload = new ByteArrayInput(ctx.inflated, 0, prefix + size);
+    payload.seek(prefix);
+    return payload;
+  }
+
   /**
    * Read a UTF-8 string from the buffer
    *
@@ -153,26 +508,40 @@ public class BosonReader {
    * @param verifiedType the data type to be de-serialized
    * @return the string
    */
-  private String readString(ReaderCtx ctx, boolean verified, byte verifiedType) throws Exception {
+  String readString(ReaderCtx ctx, boolean verified, byte verifiedType) throws Exception {
     byte type = verifiedType;
     if (!verified) {
       type = ctx.buf.readByte();
     }
     if (STRING.id == type) {
-      //read size of type - how many bytes are in the string
-      int size = ctx.buf.readInt();
-      if (size == 0) {
-        return "";
-      }
-      //read type's payload and de-serialize
-      byte[] bytes = new byte[size];
-      ctx.buf.readFully(bytes, 0, size);
-      return new String(bytes, UTF_8);
+      return readUtf8(ctx);
+    } else if (STRING_REF.id == type) {
+      int idx = readSize(ctx);
+      if (idx < 0 || idx >= ctx.strings.size()) {
+        throw new InvalidDataException(format("String table index %s is out of range, only %s strings defined",
+          idx, ctx.strings.size()), null);
+      }
+      return ctx.strings.get(idx);
+    } else if (STRING_DEF.id == type) {
+      long at = ctx.poloOffsets == null ? 0 : ctx.buf.position();
+      String str = readUtf8(ctx);
+      ctx.defineString(str, at);
+      return str;
     } else {
       throw new UnsupportedBosonTypeException(format("type %s is not a Boson STRING", type), null);
     }
   }
 
+  String readUtf8(ReaderCtx ctx) throws Exception {
+    //read size of type - how many bytes are in the string
+    int size = readSize(ctx);
+    if (size == 0) {
+      return "";
+    }
+    //read type's payload and de-serialize
+    return ctx.buf.readUtf8(size);
+  }
+
   private Enum<?> readEnum(ReaderCtx ctx) throws Exception {
     String enumClassName = readString(ctx, false, (byte) 0);
     String enumValue = readString(ctx, false, (byte) 0);
@@ -217,21 +586,67 @@ public class BosonReader {
   }
 
   /**
-   * Read an int (4 bytes) from the buffer
+   * Read an int (4 bytes or a zigzag varint in version 2) from the buffer
    *
    * @return the int
    */
-  private int readInt(ReaderCtx ctx) throws Exception {
-    return ctx.buf.readInt();
+  int readInt(ReaderCtx ctx) throws Exception {
+    if (ctx.version == BosonWriter.WriterCtx.VERSION_1) {
+      return ctx.buf.readInt();
+    }
+    int v = readVarInt(ctx);
+    return (v >>> 1) ^ -(v & 1);
   }
 
   /**
-   * Read a long (8 bytes) from the buffer
+   * Read a long (8 bytes or a zigzag varint in version 2) from the buffer
    *
    * @return the long
    */
-  private long readLong(ReaderCtx ctx) throws Exception {
-    return ctx.buf.readLong();
+  long readLong(ReaderCtx ctx) throws Exception {
+    if (ctx.version == BosonWriter.WriterCtx.VERSION_1) {
+      return ctx.buf.readLong();
+    }
+    long v = readVarLong(ctx);
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  /**
+   * Read a size, count, string table index or reference number. None of these are ever negative, a negative one
+   * is rejected here so that skipping a value can't move backwards over bytes already read.
+   *
+   * @return the size
+   */
+  int readSize(ReaderCtx ctx) throws Exception {
+    int size = ctx.version == BosonWriter.WriterCtx.VERSION_1 ? ctx.buf.readInt() : readVarInt(ctx);
+    if (size < 0) {
+      throw new InvalidDataException(format("Negative size %s, possible data corruption", size), null);
+    }
+    return size;
+  }
+
+  private int readVarInt(ReaderCtx ctx) throws Exception {
+    int v = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = ctx.buf.readByte();
+      v |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return v;
+      }
+    }
+    throw new InvalidDataException("Malformed varint, more than 5 bytes", null);
+  }
+
+  private long readVarLong(ReaderCtx ctx) throws Exception {
+    long v = 0;
+    for (int shift = 0; shift < 70; shift += 7) {
+      byte b = ctx.buf.readByte();
+      v |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return v;
+      }
+    }
+    throw new InvalidDataException("Malformed varint, more than 10 bytes", null);
   }
 
   /**
@@ -277,8 +692,9 @@ public class BosonReader {
    * @return the array
    */
   private Object readArray(ReaderCtx ctx) throws Exception {
+    skipContainerHeader(ctx);
     //read number of elements in the array
-    int size = ctx.buf.readInt();
+    int size = readSize(ctx);
     String componentTypeName = readString(ctx, false, (byte) 0);
     Class<?> componentType = classOf(ctx.loader, componentTypeName);
     Object arr = null;
@@ -293,9 +709,83 @@ public class BosonReader {
     return arr;
   }
 
+  /**
+   * Read a packed array of primitives straight into a new primitive array
+   *
+   * @param ctx the ctx
+   * @return the array
+   */
+  private Object readPackedArray(ReaderCtx ctx) throws Exception {
+    byte component = ctx.buf.readByte();
+    int size = readSize(ctx);
+    //check the size against the data before allocating so a corrupt size fails as bad data, not out of memory
+    long length = (long) size * packedWidth(component);
+    BosonInput in = ctx.buf;
+    long remaining = in.remaining();
+    if (remaining < 0) {
+      in = new ByteArrayInput(readGrowing(in, length));
+    } else if (length > remaining) {
+      throw new InvalidDataException(format("Packed array of %s elements needs %s bytes but only %s are left, " +
+        "possible data corruption", size, length, remaining), null);
+    }
+    if (component == INT.id) {
+      int[] arr = new int[size];
+      in.readInts(arr);
+      return arr;
+    } else if (component == LONG.id) {
+      long[] arr = new long[size];
+      in.readLongs(arr);
+      return arr;
+    } else if (component == DOUBLE.id) {
+      double[] arr = new double[size];
+      in.readDoubles(arr);
+      return arr;
+    } else if (component == FLOAT.id) {
+      float[] arr = new float[size];
+      in.readFloats(arr);
+      return arr;
+    } else if (component == SHORT.id) {
+      short[] arr = new short[size];
+      in.readShorts(arr);
+      return arr;
+    } else if (component == CHAR.id) {
+      char[] arr = new char[size];
+      in.readChars(arr);
+      return arr;
+    } else if (component == BOOLEAN.id) {
+      boolean[] arr = new boolean[size];
+      for (int i = 0; i < size; i++) {
+        arr[i] = in.readByte() != 0;
+      }
+      return arr;
+    }
+    throw new UnsupportedBosonTypeException(format("type %s is not a packable boson type", component), null);
+  }
+
+  /**
+   * Read length bytes from an input which can't say how much data it has left. The array grows as the bytes arrive
+   * so a corrupt length runs out of data long before it can run out of memory.
+   */
+  private static byte[] readGrowing(BosonInput in, long length) throws IOException {
+    if (length > Integer.MAX_VALUE - 8) {
+      throw new InvalidDataException(format("%s bytes is too large for an array, possible data corruption", length),
+        null);
+    }
+    byte[] bytes = new byte[(int) Math.min(length, GROWING_CHUNK)];
+    int read = 0;
+    while (read < length) {
+      if (read == bytes.length) {
+        bytes = Arrays.copyOf(bytes, (int) Math.min(length, (long) bytes.length * 2));
+      }
+      in.readFully(bytes, read, bytes.length - read);
+      read = bytes.length;
+    }
+    return bytes;
+  }
+
   private byte[] readByteArray(ReaderCtx ctx) throws Exception {
     //read number of elements in the array
-    int size = ctx.buf.readInt();
+    int size = readSize(ctx);
     byte[] arr = new byte[size];
     ctx.buf.readFully(arr, 0, size);
     return arr;
@@ -307,8 +797,9 @@ public class BosonReader {
    * @return the list
    */
   private List<Object> readList(ReaderCtx ctx) throws Exception {
+    skipContainerHeader(ctx);
     //read number of elements in the array
-    int size = ctx.buf.readInt();
+    int size = readSize(ctx);
     List<Object> arr = new ArrayList<>();
     for (int i = 0; i < size; i++) {
       //get type of this element in the array
@@ -320,8 +811,9 @@ public class BosonReader {
   }
 
   private Set<Object> readSet(ReaderCtx ctx) throws Exception {
+    skipContainerHeader(ctx);
     //read number of elements in the array
-    int size = ctx.buf.readInt();
+    int size = readSize(ctx);
     Set<Object> set = new HashSet<>();
     for (int i = 0; i < size; i++) {
       //get type of this element in the array
@@ -338,29 +830,42 @@ public class BosonReader {
    * @return the map
    */
   private Map<Object, Object> readMap(ReaderCtx ctx) throws Exception {
-    int size = ctx.buf.readInt();
+    skipContainerHeader(ctx);
+    int size = readSize(ctx);
     Map<Object, Object> kv = new HashMap<>();
+    Projection scope = ctx.projection;
     for (int i = 0; i < size; i++) {
       byte keyType = ctx.buf.readByte();
       Object key = readType(ctx, keyType);
       byte valueType = ctx.buf.readByte();
+      if (!select(ctx, scope, String.valueOf(key), valueType)) {
+        continue;
+      }
       Object value = readType(ctx, valueType);
       kv.put(key, value);
     }
+    ctx.projection = scope;
     return kv;
   }
 
-  private Object readPolo(ReaderCtx ctx) throws Exception {
-    //get reference
-    int ref = ctx.buf.readInt();
+  private Object readPolo(ReaderCtx ctx, boolean compact) throws Exception {
+    long at = ctx.poloOffsets == null ? 0 : ctx.buf.position() - 1;
+    skipContainerHeader(ctx);
+    //get reference, compact POLOs don't have one
+    int ref = compact ? -1 : readSize(ctx);
+    if (ref >= 0 && ctx.poloOffsets != null) {
+      ctx.recordPolo(ref, at);
+    }
     //get class name
     String poloClassName = readString(ctx, false, (byte) 0);
+    Class<?> expected = ctx.expected;
+    ctx.expected = null;
     if (poloClassName.isEmpty()) {
       throw new InvalidDataException("Cannot de-serialise a POLO without it's fully qualified class name " +
                                        "being provided", null);
     }
     //get number of fields serialized
-    int size = ctx.buf.readInt();
+    int size = readSize(ctx);
     if (ctx.readPoloAsMap) {
       return readPoloMap(ctx, ref, size);
     } else {
@@ -369,18 +874,23 @@ public class BosonReader {
       if (isJsonArray || isJsonObject) {
         return readJson(ctx, isJsonArray, ref, size);
       } else {
-        return readPoloReflection(ctx, poloClassName, ref, size);
+        return readPoloReflection(ctx, poloClass(ctx, poloClassName, expected), ref, size);
       }
     }
   }
 
   private Object readJson(ReaderCtx ctx, boolean isArray, int ref, int size) throws Exception {
     JsonNode instance = isArray ? ctx.mapper.createArrayNode() : ctx.mapper.createObjectNode();
-    ctx.references.put(ref, instance);
+    ctx.addReference(ref, instance);
+    Projection scope = ctx.projection;
     for (int i = 0; i < size; i++) {
       //polo keys are required to be strings
       String key = readString(ctx, false, (byte) 0);
       byte valueType = ctx.buf.readByte();
+      //elements of an array are kept or skipped together, like any other list
+      if (!isArray && !select(ctx, scope, key, valueType)) {
+        continue;
+      }
       Object value = readType(ctx, valueType);
       JsonNode json = readJsonType(value);
       if (isArray) {
@@ -389,49 +899,120 @@ public class BosonReader {
         ((ObjectNode) instance).set(key, json);
       }
     }
+    ctx.projection = scope;
     return instance;
   }
 
   private Object readPoloMap(ReaderCtx ctx, int ref, int size) throws Exception {
     Map<String, Object> instance = new HashMap<>();
     //Put the instance in the reference table
-    ctx.references.put(ref, instance);
+    ctx.addReference(ref, instance);
+    Projection scope = ctx.projection;
     for (int i = 0; i < size; i++) {
       //polo keys are required to be strings
       String key = readString(ctx, false, (byte) 0);
       byte valueType = ctx.buf.readByte();
+      if (!select(ctx, scope, key, valueType)) {
+        continue;
+      }
       Object value = readType(ctx, valueType);
       instance.put(key, value);
     }
+    ctx.projection = scope;
     return instance;
   }
 
-  private Object readPoloReflection(ReaderCtx ctx, String poloClassName, int ref, int size) throws Exception {
-    //try to load the class if available
-    Class<?> klass;
+  /**
+   * Narrow the selection to the value of a field or key, skipping the value if it isn't selected
+   *
+   * @param scope the selection of the POLO or map the value is in
+   * @return true if the value should be read, false if it has been skipped
+   */
+  private boolean select(ReaderCtx ctx, Projection scope, String key, byte valueType) throws Exception {
+    if (scope == null) {
+      return true;
+    }
+    Projection child = scope.child(key);
+    if (child == null) {
+      skip(ctx, valueType);
+      return false;
+    }
+    ctx.projection = child.all() ? null : child;
+    return true;
+  }
+
+  /**
+   * @param expected the class the POLO is expected to be, the target class or the type of the field it's in
+   * @return the class to read a POLO as, the class it was written from unless the target class was requested or it
+   * can't be loaded or assigned to its field
+   */
+  private static Class<?> poloClass(ReaderCtx ctx, String name, Class<?> expected) {
+    if (expected != null && expected == ctx.target) {
+      return expected;
+    }
     try {
-      klass = ctx.loader.loadClass(poloClassName);
+      Class<?> klass = ctx.loader.loadClass(name);
+      if (expected == null || expected.isAssignableFrom(klass)) {
+        return klass;
+      }
     } catch (ClassNotFoundException e) {
-      throw new IllegalArgumentException(format("Cannot load the requested class %s", poloClassName), e);
+      if (expected == null) {
+        throw new IllegalArgumentException(format("Cannot load the requested class %s", name), e);
+      }
     }
+    return expected;
+  }
+
+  private Object readPoloReflection(ReaderCtx ctx, Class<?> klass, int ref, int size) throws Exception {
     Object instance = ReflectionUtil.newInstance(klass);
     //Put the instance in the reference table
-    ctx.references.put(ref, instance);
-    //create a map of fields names -> Field
-    Map<String, Field> fieldset = getAllFields(klass);
+    ctx.addReference(ref, instance);
+    PoloCodec codec = PoloCodec.of(klass);
+    Projection scope = ctx.projection;
+    boolean projecting = ctx.projecting();
     for (int i = 0; i < size; i++) {
       //polo keys are required to be strings
       String key = readString(ctx, false, (byte) 0);
       byte valueType = ctx.buf.readByte();
+      PoloCodec.Accessor accessor = codec.field(key);
+      if (projecting && (accessor == null || !select(ctx, scope, key, valueType))) {
+        //not wanted or nowhere to put it
+        if (accessor == null) {
+          skip(ctx, valueType);
+        }
+        continue;
+      }
+      if (projecting && (valueType == POLO.id || valueType == COMPACT_POLO.id || valueType == REFERENCE.id)) {
+        Class<?> type = accessor.field.getType();
+        //only a class that can be created can stand in for the one written
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+          ctx.expected = type;
+        }
+      }
+      if (accessor != null && accessor.setter != null && accessor.primitive != null
+            && accessor.primitive.id == valueType) {
+        //exact primitive match, set without boxing
+        readPrimitiveField(ctx, accessor, instance);
+        continue;
+      }
       Object value = readType(ctx, valueType);
-      Field field = fieldset.get(key);
+      Field field = accessor == null ? null : accessor.field;
       if (field != null && value != null) {
         Class<?> valueCls = value.getClass();
         //if field's type is an array  create an array of it's type
         Class<?> fieldType = field.getType();
         String cname = valueCls.getName();
         if (fieldType.isArray()) {
-          if (valueCls.isArray()) {
+          if (fieldType.isInstance(value)) {
+            //already the right type, e.g. a packed primitive array
+            try {
+              field.set(instance, value);
+            } catch (IllegalAccessException e) {
+              log.debug(format("Unable to access field \"%s\" of class \"%s\" ", key,
+                klass.getName()
+              ));
+            }
+          } else if (valueCls.isArray()) {
             int length = Array.getLength(value);
             //create an array of the expected type
             Object arr = Array.newInstance(fieldType.getComponentType(), length);
@@ -476,24 +1057,250 @@ public class BosonReader {
       } else {
         if (value != null) {
           log.warn(format("Field %s received with value %s but the " +
-                            "field does not exist in class %s", key, value, poloClassName));
+                            "field does not exist in class %s", key, value, klass.getName()));
         }
       }
     }
+    ctx.projection = scope;
     return instance;
   }
 
+  private void readPrimitiveField(ReaderCtx ctx, PoloCodec.Accessor field, Object instance) throws Exception {
+    try {
+      switch (field.primitive) {
+        case INT:
+          field.setter.invokeExact(instance, readInt(ctx));
+          break;
+        case LONG:
+          field.setter.invokeExact(instance, readLong(ctx));
+          break;
+        case DOUBLE:
+          field.setter.invokeExact(instance, ctx.buf.readDouble());
+          break;
+        case FLOAT:
+          field.setter.invokeExact(instance, ctx.buf.readFloat());
+          break;
+        case BOOLEAN:
+          field.setter.invokeExact(instance, ctx.buf.readByte() != 0);
+          break;
+        case SHORT:
+          field.setter.invokeExact(instance, ctx.buf.readShort());
+          break;
+        case BYTE:
+          field.setter.invokeExact(instance, ctx.buf.readByte());
+          break;
+        case CHAR:
+          field.setter.invokeExact(instance, ctx.buf.readChar());
+          break;
+        default:
+          throw new IllegalStateException(format("%s is not a primitive type", field.primitive));
+      }
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new InvalidDataException(format("Unable to set field \"%s\" of class \"%s\"", field.field.getName(),
+        field.field.getDeclaringClass().getName()
+      ), t);
+    }
+  }
+
   private Object readReference(ReaderCtx ctx, byte verifiedType) throws Exception {
     Object obj;
     if (REFERENCE.id == verifiedType) {
-      int reference = ctx.buf.readInt();
-      obj = ctx.references.get(reference);
+      int reference = readSize(ctx);
+      obj = ctx.reference(reference);
+      Class<?> expected = ctx.expected;
+      ctx.expected = null;
+      if (obj == null && ctx.poloOffsets != null) {
+        //a view skipped over the POLO, go back and read it
+        long resume = ctx.buf.position();
+        ctx.expected = expected;
+        ctx.buf.seek(ctx.poloOffset(reference));
+        obj = readType(ctx, ctx.buf.readByte());
+        ctx.buf.seek(resume);
+      }
       return obj;
     } else {
       throw new UnsupportedBosonTypeException(format("type %s is not a Boson reference", verifiedType), null);
     }
   }
 
+  /**
+   * Move past a value without building it. Strings in the message's string table are still read so later references
+   * to them resolve. A skipped POLO keeps its reference number, within a view its offset is recorded so it can be
+   * read if it is referred to later, otherwise references to it read as null.
+   *
+   * @param type the value's type, already read
+   */
+  void skip(ReaderCtx ctx, byte type) throws Exception {
+    if (type < 0 || READERS[type] == null) {
+      throw new UnsupportedBosonTypeException(format("type %s is not a valid boson type", type), null);
+    }
+    BosonInput in = ctx.buf;
+    long at = in.position() - 1;
+    if (ctx.sized && isContainer(type) && skipSized(ctx, at)) {
+      return;
+    }
+    switch (BosonType.byId(type)) {
+      case NULL:
+        break;
+      case BYTE:
+      case BOOLEAN:
+        in.skipBytes(1);
+        break;
+      case SHORT:
+      case CHAR:
+        in.skipBytes(2);
+        break;
+      case FLOAT:
+        in.skipBytes(4);
+        break;
+      case DOUBLE:
+        in.skipBytes(8);
+        break;
+      case INT:
+        readInt(ctx);
+        break;
+      case LONG:
+      case DATE:
+      case LOCAL_DATE:
+      case JODA_DATETIME:
+        readLong(ctx);
+        break;
+      case STRING:
+      case BYTE_ARRAY:
+        in.skipBytes(readSize(ctx));
+        break;
+      case STRING_DEF:
+      case STRING_REF:
+        readString(ctx, true, type);
+        break;
+      case REFERENCE:
+        readSize(ctx);
+        break;
+      case PACKED_ARRAY:
+        byte component = in.readByte();
+        skipBytes(in, (long) packedWidth(component) * readSize(ctx));
+        break;
+      case ENUM:
+        skipString(ctx);
+        skipString(ctx);
+        break;
+      case ARRAY:
+        int length = readSize(ctx);
+        skipString(ctx); //component type
+        skipValues(ctx, length);
+        break;
+      case LIST:
+      case SET:
+        skipValues(ctx, readSize(ctx));
+        break;
+      case MAP:
+        skipValues(ctx, (long) readSize(ctx) << 1);
+        break;
+      case POLO:
+        int ref = readSize(ctx);
+        if (ctx.poloOffsets != null) {
+          ctx.recordPolo(ref, at);
+        } else {
+          ctx.addReference(ref, null);
+        }
+        skipPoloBody(ctx);
+        break;
+      case COMPACT_POLO:
+        skipPoloBody(ctx);
+        break;
+      default:
+        //all other types are written as a string
+        skipString(ctx);
+    }
+  }
+
+  private static boolean isContainer(byte type) {
+    return type == LIST.id || type == SET.id || type == MAP.id || type == ARRAY.id || type == POLO.id
+             || type == COMPACT_POLO.id;
+  }
+
+  /**
+   * Read a sized container's header and jump over the container if that's safe, i.e. it defines no strings which
+   * later references need and, when reading through a view, assigns no references a view might need to resolve.
+   *
+   * @param at the position of the container's type byte
+   * @return true if the container was skipped, false if it has to be parsed, its header has been read either way
+   */
+  private boolean skipSized(ReaderCtx ctx, long at) throws Exception {
+    BosonInput in = ctx.buf;
+    int length = in.readInt();
+    int strings = in.readInt();
+    int refs = in.readInt();
+    if (length < 0 || strings < 0 || refs < 0) {
+      throw new InvalidDataException(format("Corrupt container header at %s", at), null);
+    }
+    if (strings != 0 || (refs != 0 && ctx.poloOffsets != null)) {
+      return false;
+    }
+    in.skipBytes(length);
+    ctx.skipReferences(refs);
+    return true;
+  }
+
+  /**
+   * Containers carry a header when the message has sized containers, it's only needed to skip them
+   */
+  private void skipContainerHeader(ReaderCtx ctx) throws Exception {
+    if (ctx.sized) {
+      ctx.buf.skipBytes(BosonWriter.WriterCtx.CONTAINER_HEADER);
+    }
+  }
+
+  private void skipValues(ReaderCtx ctx, long count) throws Exception {
+    for (long i = 0; i < count; i++) {
+      skip(ctx, ctx.buf.readByte());
+    }
+  }
+
+  private void skipPoloBody(ReaderCtx ctx) throws Exception {
+    skipString(ctx); //class name
+    int size = readSize(ctx);
+    for (int i = 0; i < size; i++) {
+      skipString(ctx); //field name
+      skip(ctx, ctx.buf.readByte());
+    }
+  }
+
+  void skipString(ReaderCtx ctx) throws Exception {
+    byte type = ctx.buf.readByte();
+    if (type == STRING.id) {
+      ctx.buf.skipBytes(readSize(ctx));
+    } else {
+      readString(ctx, true, type);
+    }
+  }
+
+  static void skipBytes(BosonInput in, long n) throws Exception {
+    while (n > 0) {
+      int step = (int) Math.min(n, Integer.MAX_VALUE);
+      in.skipBytes(step);
+      n -= step;
+    }
+  }
+
+  /**
+   * @return the number of bytes each element of a packed array of the given component type takes
+   */
+  static int packedWidth(byte component) {
+    if (component == INT.id || component == FLOAT.id) {
+      return 4;
+    } else if (component == LONG.id || component == DOUBLE.id) {
+      return 8;
+    } else if (component == SHORT.id || component == CHAR.id) {
+      return 2;
+    } else if (component == BOOLEAN.id) {
+      return 1;
+    }
+    throw new UnsupportedBosonTypeException(format("type %s is not a packable boson type", component), null);
+  }
+
   /**
    * Read the next type from the buffer.
    * The type param must match one of Boson's supported types otherwise an exception is thrown
@@ -501,73 +1308,61 @@ public class BosonReader {
    * @param type the 1 byte integer representing a Boson type
    * @return the type
    */
-  private Object readType(ReaderCtx ctx, byte type) throws Exception {
-    if (type == BYTE.id) {
-      return readByte(ctx);
-    } else if (type == SHORT.id) {
-      return readShort(ctx);
-    } else if (type == INT.id) {
-      return readInt(ctx);
-    } else if (type == LONG.id) {
-      return readLong(ctx);
-    } else if (type == FLOAT.id) {
-      return readFloat(ctx);
-    } else if (type == DOUBLE.id) {
-      return readDouble(ctx);
-    } else if (type == BOOLEAN.id) {
-      return readBoolean(ctx);
-    } else if (type == CHAR.id) {
-      return readChar(ctx);
-    } else if (type == NULL.id) {
-      return null;
-    } else if (type == STRING.id) {
-      return readString(ctx, true, type);
-    } else if (type == ARRAY.id) {
-      return readArray(ctx);
-    } else if (type == BYTE_ARRAY.id) {
-      return readByteArray(ctx);
-    } else if (type == LIST.id) {
-      return readList(ctx);
-    } else if (type == SET.id) {
-      return readSet(ctx);
-    } else if (type == MAP.id) {
-      return readMap(ctx);
-    } else if (type == POLO.id) {
-      return readPolo(ctx);
-    } else if (type == REFERENCE.id) {
-      return readReference(ctx, type);
-    } else if (type == ENUM.id) {
-      return readEnum(ctx);
-    } else if (type == DATE.id) {
-      return new Date(ctx.buf.readLong());
-    } else if (type == LOCAL_DATE.id) {
-      return LocalDate.ofEpochDay(ctx.buf.readLong());
-    } else if (type == LOCAL_DATETIME.id) {
-      return LocalDateTime.parse(readString(ctx, false, (byte) 0));
-    } else if (type == LOCALTIME.id) {
-      return LocalTime.parse(readString(ctx, false, (byte) 0));
-    } else if (type == DURATION.id) { //ISO-8601 seconds based representation, such as PT8H6M12.345S.
-      //see https://docs.oracle.com/javase/8/docs/api/java/time/Duration.html#toString--
-      return Duration.parse(readString(ctx, false, (byte) 0));
-    } else if (type == PERIOD.id) { //Outputs this period as a String, such as P6Y3M1D.
-      //see https://docs.oracle.com/javase/8/docs/api/java/time/Period.html#toString--
-      return Period.parse(readString(ctx, false, (byte) 0));
-    } else if (type == JODA_DATETIME.id) {
-      return new DateTime(ctx.buf.readLong());
-    } else if (type == JODA_LOCAL_DATE.id) {
-      return org.joda.time.LocalDate.parse(readString(ctx, false, (byte) 0));
-    } else if (type == JODA_LOCAL_DATE_TIME.id) {
-      return org.joda.time.LocalDateTime.parse(readString(ctx, false, (byte) 0));
-    } else if (type == JODA_LOCALTIME.id) {
-      return org.joda.time.LocalTime.parse(readString(ctx, false, (byte) 0));
-    } else if (type == JODA_DURATION.id) {
-      return org.joda.time.Duration.parse(readString(ctx, false, (byte) 0));
-    } else if (type == JODA_INTERVAL.id) {
-      return Interval.parse(readString(ctx, false, (byte) 0));
-    } else if (type == JODA_PERIOD.id) {
-      return org.joda.time.Period.parse(readString(ctx, false, (byte) 0));
-    }
-    throw new UnsupportedBosonTypeException(format("type %s is not a valid boson type", type), null);
+  Object readType(ReaderCtx ctx, byte type) throws Exception {
+    TypeReader typeReader = type < 0 ? null : READERS[type];
+    if (typeReader == null) {
+      throw new UnsupportedBosonTypeException(format("type %s is not a valid boson type", type), null);
+    }
+    return typeReader.read(this, ctx, type);
+  }
+
+  /**
+   * Builds the table {@link #readType(ReaderCtx, byte)} dispatches through, indexed by type id.
+   * Ids with no reader are left null.
+   */
+  private static TypeReader[] readers() {
+    TypeReader[] readers = new TypeReader[128];
+    readers[BYTE.id] = (r, ctx, type) -> r.readByte(ctx);
+    readers[SHORT.id] = (r, ctx, type) -> r.readShort(ctx);
+    readers[INT.id] = (r, ctx, type) -> r.readInt(ctx);
+    readers[LONG.id] = (r, ctx, type) -> r.readLong(ctx);
+    readers[FLOAT.id] = (r, ctx, type) -> r.readFloat(ctx);
+    readers[DOUBLE.id] = (r, ctx, type) -> r.readDouble(ctx);
+    readers[BOOLEAN.id] = (r, ctx, type) -> r.readBoolean(ctx);
+    readers[CHAR.id] = (r, ctx, type) -> r.readChar(ctx);
+    readers[NULL.id] = (r, ctx, type) -> null;
+    readers[STRING.id] = (r, ctx, type) -> r.readString(ctx, true, type);
+    readers[STRING_DEF.id] = readers[STRING.id];
+    readers[STRING_REF.id] = readers[STRING.id];
+    readers[ARRAY.id] = (r, ctx, type) -> r.readArray(ctx);
+    readers[BYTE_ARRAY.id] = (r, ctx, type) -> r.readByteArray(ctx);
+    readers[PACKED_ARRAY.id] = (r, ctx, type) -> r.readPackedArray(ctx);
+    readers[LIST.id] = (r, ctx, type) -> r.readList(ctx);
+    readers[SET.id] = (r, ctx, type) -> r.readSet(ctx);
+    readers[MAP.id] = (r, ctx, type) -> r.readMap(ctx);
+    readers[POLO.id] = (r, ctx, type) -> r.readPolo(ctx, false);
+    readers[COMPACT_POLO.id] = (r, ctx, type) -> r.readPolo(ctx, true);
+    readers[REFERENCE.id] = (r, ctx, type) -> r.readReference(ctx, type);
+    readers[ENUM.id] = (r, ctx, type) -> r.readEnum(ctx);
+    readers[DATE.id] = (r, ctx, type) -> new Date(r.readLong(ctx));
+    readers[LOCAL_DATE.id] = (r, ctx, type) -> LocalDate.ofEpochDay(r.readLong(ctx));
+    readers[LOCAL_DATETIME.id] = (r, ctx, type) -> LocalDateTime.parse(r.readString(ctx, false, (byte) 0));
+    readers[LOCALTIME.id] = (r, ctx, type) -> LocalTime.parse(r.readString(ctx, false, (byte) 0));
+    //ISO-8601 seconds based representation, such as PT8H6M12.345S.
+    //see https://docs.oracle.com/javase/8/docs/api/java/time/Duration.html#toString--
+    readers[DURATION.id] = (r, ctx, type) -> Duration.parse(r.readString(ctx, false, (byte) 0));
+    //Outputs this period as a String, such as P6Y3M1D.
+    //see https://docs.oracle.com/javase/8/docs/api/java/time/Period.html#toString--
+    readers[PERIOD.id] = (r, ctx, type) -> Period.parse(r.readString(ctx, false, (byte) 0));
+    readers[JODA_DATETIME.id] = (r, ctx, type) -> new DateTime(r.readLong(ctx));
+    readers[JODA_LOCAL_DATE.id] = (r, ctx, type) -> org.joda.time.LocalDate.parse(r.readString(ctx, false, (byte) 0));
+    readers[JODA_LOCAL_DATE_TIME.id] = (r, ctx, type) ->
+                                         org.joda.time.LocalDateTime.parse(r.readString(ctx, false, (byte) 0));
+    readers[JODA_LOCALTIME.id] = (r, ctx, type) -> org.joda.time.LocalTime.parse(r.readString(ctx, false, (byte) 0));
+    readers[JODA_DURATION.id] = (r, ctx, type) -> org.joda.time.Duration.parse(r.readString(ctx, false, (byte) 0));
+    readers[JODA_INTERVAL.id] = (r, ctx, type) -> Interval.parse(r.readString(ctx, false, (byte) 0));
+    readers[JODA_PERIOD.id] = (r, ctx, type) -> org.joda.time.Period.parse(r.readString(ctx, false, (byte) 0));
+    return readers;
   }
 
   public JsonNode readJsonType(Object data) {
@@ -596,6 +1391,15 @@ public class BosonReader {
     }
   }
 
+  /**
+   * Read a message's root value, the version byte having been read
+   */
+  Object readMessage(ReaderCtx ctx) throws Exception {
+    ctx.projection = ctx.paths;
+    ctx.expected = ctx.target;
+    return readType(ctx);
+  }
+
   private Object readType(ReaderCtx ctx) throws Exception {
     return readType(ctx, ctx.buf.readByte());
   }
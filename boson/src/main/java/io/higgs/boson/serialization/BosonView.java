@@ -0,0 +1,219 @@
+package io.higgs.boson.serialization;
+
+import java.nio.ByteBuffer;
+
+import static io.higgs.boson.BosonType.ARRAY;
+import static io.higgs.boson.BosonType.BOOLEAN;
+import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.COMPACT_POLO;
+import static io.higgs.boson.BosonType.DOUBLE;
+import static io.higgs.boson.BosonType.FLOAT;
+import static io.higgs.boson.BosonType.INT;
+import static io.higgs.boson.BosonType.LIST;
+import static io.higgs.boson.BosonType.LONG;
+import static io.higgs.boson.BosonType.MAP;
+import static io.higgs.boson.BosonType.PACKED_ARRAY;
+import static io.higgs.boson.BosonType.POLO;
+import static io.higgs.boson.BosonType.REFERENCE;
+import static io.higgs.boson.BosonType.SET;
+import static io.higgs.boson.BosonType.SHORT;
+import static java.lang.String.format;
+
+/**
+ * A read only view over an encoded message which decodes only the values asked for.
+ * Values are found by a dot path, e.g. "order.customer.id", as produced by
+ * {@link io.higgs.core.reflect.ReflectionUtil#dotPath(java.util.List)}. Each part of the path is a POLO field name,
+ * the string form of a map key or the index of an element of a list, set or array. Everything not on the path is
+ * skipped over without being built.
+ * <p>
+ * A view keeps what it learns about the message, the string table and where each POLO starts, between lookups so
+ * references are resolved and POLOs read through a view are shared between lookups. A view is not thread safe.
+ */
+public final class BosonView {
+  private static final byte MISSING = -1;
+  private final BosonInput input;
+  private final BosonReader.ReaderCtx ctx;
+  private final BosonReader reader;
+  private final long start;
+
+  /**
+   * @param input  the message, it must support {@link BosonInput#seek(long)}
+   * @param ctx    the context to read values with
+   * @param reader the reader to read values with
+   */
+  public BosonView(BosonInput input, BosonReader.ReaderCtx ctx, BosonReader reader) {
+    this.ctx = ctx;
+    this.reader = reader;
+    try {
+      this.input = BosonReader.open(ctx, input, true);
+      start = this.input.position();
+    } catch (Exception e) {
+      throw new InvalidDataException("Unable to read the message's version", e);
+    }
+  }
+
+  public static BosonView of(byte[] data) {
+    return new BosonView(new ByteArrayInput(data), new BosonReader.ReaderCtx(), BosonReader.getInstance());
+  }
+
+  /**
+   * View the message starting at the buffer's position, the buffer itself is left untouched
+   */
+  public static BosonView of(ByteBuffer data) {
+    return new BosonView(new ByteBufferInput(data.duplicate()), new BosonReader.ReaderCtx(),
+      BosonReader.getInstance());
+  }
+
+  /**
+   * @param path the dot path of the value, an empty path is the whole message
+   * @return the value at the path or null if there's no such value
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String path) {
+    Object value = find(path);
+    return value == this ? null : (T) value;
+  }
+
+  /**
+   * @return true if the message has a value, possibly null, at the path
+   */
+  public boolean has(String path) {
+    return find(path) != this;
+  }
+
+  /**
+   * @return the value at the path or this view itself if there's no such value
+   */
+  private Object find(String path) {
+    String[] parts = path.isEmpty() ? new String[0] : path.split("\\.");
+    try {
+      input.seek(start);
+      byte type = input.readByte();
+      for (int i = 0; i < parts.length; i++) {
+        if (type == REFERENCE.id) {
+          input.seek(ctx.poloOffset(reader.readSize(ctx)));
+          type = input.readByte();
+        }
+        if (type == PACKED_ARRAY.id) {
+          //elements of a packed array are untyped, so one can only be the end of the path
+          return i == parts.length - 1 ? packedElement(parts[i]) : this;
+        }
+        type = descend(type, parts[i]);
+        if (type == MISSING) {
+          return this;
+        }
+      }
+      if (type == POLO.id) {
+        //a POLO already read, by an earlier lookup or through a reference, is returned as is
+        long at = input.position();
+        if (ctx.sized) {
+          input.skipBytes(BosonWriter.WriterCtx.CONTAINER_HEADER);
+        }
+        Object existing = ctx.referenceIfRead(reader.readSize(ctx));
+        if (existing != null) {
+          return existing;
+        }
+        input.seek(at);
+      }
+      return reader.readType(ctx, type);
+    } catch (Exception e) {
+      throw new InvalidDataException(format("Unable to read %s", path), e);
+    }
+  }
+
+  /**
+   * Move into the value of a container, which starts just after its type byte, that the part of a path names
+   *
+   * @return the type of the named value, positioned just after its type byte, or {@link #MISSING}
+   */
+  private byte descend(byte type, String part) throws Exception {
+    long at = input.position() - 1;
+    if (ctx.sized && (type == POLO.id || type == COMPACT_POLO.id || type == MAP.id || type == LIST.id
+                        || type == SET.id || type == ARRAY.id)) {
+      //the container's size isn't needed to look inside it
+      input.skipBytes(BosonWriter.WriterCtx.CONTAINER_HEADER);
+    }
+    if (type == POLO.id || type == COMPACT_POLO.id) {
+      if (type == POLO.id) {
+        ctx.recordPolo(reader.readSize(ctx), at);
+      }
+      reader.readString(ctx, false, (byte) 0); //class name
+      int size = reader.readSize(ctx);
+      for (int i = 0; i < size; i++) {
+        String key = reader.readString(ctx, false, (byte) 0);
+        byte valueType = input.readByte();
+        if (key.equals(part)) {
+          return valueType;
+        }
+        reader.skip(ctx, valueType);
+      }
+    } else if (type == MAP.id) {
+      int size = reader.readSize(ctx);
+      for (int i = 0; i < size; i++) {
+        Object key = reader.readType(ctx, input.readByte());
+        byte valueType = input.readByte();
+        if (part.equals(String.valueOf(key))) {
+          return valueType;
+        }
+        reader.skip(ctx, valueType);
+      }
+    } else if (type == LIST.id || type == SET.id || type == ARRAY.id) {
+      int size = reader.readSize(ctx);
+      if (type == ARRAY.id) {
+        reader.readString(ctx, false, (byte) 0); //component type
+      }
+      int index = index(part, size);
+      if (index == MISSING) {
+        return MISSING;
+      }
+      for (int i = 0; i < index; i++) {
+        reader.skip(ctx, input.readByte());
+      }
+      return input.readByte();
+    }
+    return MISSING;
+  }
+
+  private Object packedElement(String part) throws Exception {
+    byte component = input.readByte();
+    int index = index(part, reader.readSize(ctx));
+    if (index == MISSING) {
+      return this;
+    }
+    BosonReader.skipBytes(input, (long) index * BosonReader.packedWidth(component));
+    if (component == INT.id) {
+      return input.readInt();
+    } else if (component == LONG.id) {
+      return input.readLong();
+    } else if (component == DOUBLE.id) {
+      return input.readDouble();
+    } else if (component == FLOAT.id) {
+      return input.readFloat();
+    } else if (component == SHORT.id) {
+      return input.readShort();
+    } else if (component == CHAR.id) {
+      return input.readChar();
+    } else if (component == BOOLEAN.id) {
+      return input.readByte() != 0;
+    }
+    return this;
+  }
+
+  /**
+   * @return the index named by the part of a path or {@link #MISSING} if it isn't an index within size
+   */
+  private static int index(String part, int size) {
+    if (part.isEmpty() || part.length() > 10) {
+      return MISSING;
+    }
+    long index = 0;
+    for (int i = 0; i < part.length(); i++) {
+      char c = part.charAt(i);
+      if (c < '0' || c > '9') {
+        return MISSING;
+      }
+      index = index * 10 + (c - '0');
+    }
+    return index < size ? (int) index : MISSING;
+  }
+}
@@ -12,26 +12,33 @@ import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ShortNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import io.higgs.boson.BosonType;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISOPeriodFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Period;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,6 +49,7 @@ import static io.higgs.boson.BosonType.BOOLEAN;
 import static io.higgs.boson.BosonType.BYTE;
 import static io.higgs.boson.BosonType.BYTE_ARRAY;
 import static io.higgs.boson.BosonType.CHAR;
+import static io.higgs.boson.BosonType.COMPACT_POLO;
 import static io.higgs.boson.BosonType.DATE;
 import static io.higgs.boson.BosonType.DOUBLE;
 import static io.higgs.boson.BosonType.DURATION;
@@ -62,30 +70,125 @@ import static io.higgs.boson.BosonType.LOCAL_DATETIME;
 import static io.higgs.boson.BosonType.LONG;
 import static io.higgs.boson.BosonType.MAP;
 import static io.higgs.boson.BosonType.NULL;
+import static io.higgs.boson.BosonType.PACKED_ARRAY;
 import static io.higgs.boson.BosonType.PERIOD;
 import static io.higgs.boson.BosonType.POLO;
 import static io.higgs.boson.BosonType.REFERENCE;
 import static io.higgs.boson.BosonType.SET;
 import static io.higgs.boson.BosonType.SHORT;
 import static io.higgs.boson.BosonType.STRING;
-import static io.higgs.core.reflect.ReflectionUtil.getAllFields;
+import static io.higgs.boson.BosonType.STRING_DEF;
+import static io.higgs.boson.BosonType.STRING_REF;
 import static java.lang.String.format;
 
 /**
  * The Boson object serialiser
  */
 public class BosonWriter {
-  private static final Charset utf8 = Charset.forName("utf-8");
   private static final Logger log = LoggerFactory.getLogger(BosonWriter.class);
   private static final BosonWriter instance = new BosonWriter();
+  private static final int FILE_CHUNK_SIZE = 1 << 16;
+  /**
+   * Writes POLOs, resolved for any class nothing else claims
+   */
+  private static final TypeWriter<Object> polo = BosonWriter::writeOther;
+  private volatile Map<Class<?>, TypeWriter<?>> custom = Collections.emptyMap();
+  private volatile Dispatch dispatch = new Dispatch();
+
+  /**
+   * Writes values of a specific class, see {@link #register(Class, TypeWriter)}
+   *
+   * @param <T> the type of value written
+   */
+  @FunctionalInterface
+  public interface TypeWriter<T> {
+    void write(BosonWriter writer, WriterCtx ctx, T value) throws IOException;
+  }
+
+  /**
+   * Caches the writer resolved for each concrete class so selecting how to write a value is a single lookup
+   */
+  private final class Dispatch extends ClassValue<TypeWriter<Object>> {
+    @Override
+    protected TypeWriter<Object> computeValue(Class<?> type) {
+      return resolve(type);
+    }
+  }
 
   public static class WriterCtx {
-    static final byte version = 1;
-    protected final HashMap<Integer, Integer> references = new HashMap<>();
+    /**
+     * The original wire format, all ints, sizes and references are 4 bytes and longs are 8
+     */
+    public static final byte VERSION_1 = 1;
+    /**
+     * Ints and longs are zigzag encoded LEB128 varints, sizes, string table indices and references are unsigned
+     * LEB128 varints
+     */
+    public static final byte VERSION_2 = 2;
+    /**
+     * Set in the version byte's high bits when containers are written with a header giving their size in bytes,
+     * see {@link #sizedContainers(boolean)}
+     */
+    public static final byte SIZED_CONTAINERS = 0x10;
+    /**
+     * Set in the version byte's high bits when the message's size follows the version byte, see {@link #framed}
+     */
+    public static final byte FRAMED = 0x20;
+    /**
+     * Set in the version byte's high bits when the bytes hold a batch of messages, see
+     * {@link BosonWriter#writeBatch(Iterable, WriterCtx, BosonWriter)}
+     */
+    public static final byte BATCH = 0x40;
+    /**
+     * Set in the version byte's high bits when the payload is deflated, see {@link #compressionThreshold(int)}
+     */
+    public static final byte COMPRESSED = (byte) 0x80;
+    /**
+     * The compression threshold which turns compression off, the default
+     */
+    public static final int NO_COMPRESSION = -1;
+    /**
+     * The size of a sized container's header, three 4 byte ints
+     */
+    static final int CONTAINER_HEADER = 12;
+    /**
+     * Buffers which grow beyond this many bytes are released on {@link #reset()} rather than kept for the next message
+     */
+    public static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    /**
+     * How deeply POLOs may nest when they are written without reference tracking, see {@link #maxDepth(int)}
+     */
+    public static final int DEFAULT_MAX_DEPTH = 1000;
+    private static final ThreadLocal<WriterCtx> LOCAL = ThreadLocal.withInitial(WriterCtx::new);
+    protected final IdentityIntMap references = new IdentityIntMap();
     protected final AtomicInteger reference = new AtomicInteger();
+    final HashMap<String, Integer> strings = new HashMap<>();
+    private byte version = VERSION_1;
     private boolean serialiseFinalFields;
-    private ByteArrayOutputStream arr = new ByteArrayOutputStream();
-    private DataOutputStream buffer = new DataOutputStream(arr);
+    private boolean stringTable;
+    private boolean packedArrays;
+    boolean sizedContainers;
+    private boolean framed;
+    /**
+     * True while a batch is written, structural strings then all go in the batch's string table
+     */
+    boolean batch;
+    References referenceMode = References.ALL;
+    /**
+     * Objects reachable more than once from the message, only used in {@link References#SHARED} mode
+     */
+    private IdentityIntMap shared;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private int depth;
+    private int maxRetainedCapacity = MAX_RETAINED_CAPACITY;
+    private int compressionThreshold = NO_COMPRESSION;
+    private boolean inUse;
+    final ByteArrayOutput heap = new ByteArrayOutput();
+    /**
+     * Where a payload is deflated to before it replaces the original, created on first use
+     */
+    private ByteArrayOutput deflated;
+    BosonOutput buffer = heap;
 
     public WriterCtx() {
     }
@@ -93,6 +196,275 @@ public class BosonWriter {
     public WriterCtx(boolean serialiseFinalFields) {
       this.serialiseFinalFields = serialiseFinalFields;
     }
+
+    /**
+     * Acquire the calling thread's shared context. The context must be given back with {@link #release()} once the
+     * encoded bytes have been consumed. If the thread's context is already in use, e.g. encode is re-entered, a new
+     * un-pooled context is returned instead.
+     *
+     * @return a reset context owned by the calling thread
+     */
+    public static WriterCtx acquire() {
+      WriterCtx ctx = LOCAL.get();
+      if (ctx.inUse) {
+        return new WriterCtx();
+      }
+      ctx.inUse = true;
+      ctx.version = VERSION_1;
+      ctx.serialiseFinalFields = false;
+      ctx.stringTable = false;
+      ctx.packedArrays = false;
+      ctx.sizedContainers = false;
+      ctx.framed = false;
+      ctx.referenceMode = References.ALL;
+      ctx.maxDepth = DEFAULT_MAX_DEPTH;
+      ctx.compressionThreshold = NO_COMPRESSION;
+      return ctx.reset();
+    }
+
+    /**
+     * Give a context obtained from {@link #acquire()} back to its thread. References to the encoded object graph
+     * are dropped here so a pooled context doesn't keep them reachable.
+     */
+    public void release() {
+      reset();
+      inUse = false;
+    }
+
+    /**
+     * Discard everything written and all references recorded so that this context can encode another message.
+     * The backing buffer and reference table keep their capacity, see {@link #maxRetainedCapacity(int)}.
+     *
+     * @return this context
+     */
+    public WriterCtx reset() {
+      resetReferences();
+      if (!strings.isEmpty()) {
+        strings.clear();
+      }
+      heap.reset(maxRetainedCapacity);
+      if (deflated != null) {
+        deflated.reset(maxRetainedCapacity);
+      }
+      buffer = heap;
+      return this;
+    }
+
+    /**
+     * Forget the POLOs written so far, each message of a batch numbers its references from 0
+     */
+    void resetReferences() {
+      references.clear();
+      reference.set(0);
+      if (shared != null) {
+        shared.clear();
+      }
+      depth = 0;
+    }
+
+    /**
+     * @param version the wire format to write, {@link #VERSION_1} (the default) or {@link #VERSION_2}
+     * @return this context
+     */
+    public WriterCtx version(byte version) {
+      if (version != VERSION_1 && version != VERSION_2) {
+        throw new IllegalArgumentException(format("Boson version %s is not supported", version));
+      }
+      this.version = version;
+      return this;
+    }
+
+    public byte version() {
+      return version;
+    }
+
+    /**
+     * @return the first byte of a message, the version along with the flags of the optional features in use
+     */
+    int header() {
+      return version | (sizedContainers ? SIZED_CONTAINERS : 0) | (framed ? FRAMED : 0) | (batch ? BATCH : 0);
+    }
+
+    /**
+     * @return true if bytes are overwritten once what follows them has been written
+     */
+    boolean patches() {
+      return sizedContainers || framed;
+    }
+
+    /**
+     * @return true if a message written to the output is encoded in this context's buffer first, either because it
+     * is back-patched and the output can't be or because it may be compressed
+     */
+    boolean stages(BosonOutput out) {
+      return out != heap && (compressionThreshold != NO_COMPRESSION || patches() && !out.canPatch());
+    }
+
+    public WriterCtx serialiseFinalFields(boolean serialiseFinalFields) {
+      this.serialiseFinalFields = serialiseFinalFields;
+      return this;
+    }
+
+    /**
+     * Enable the per-message string table. Class names, field names and enum names are then written in full the
+     * first time they appear in a message (as {@link io.higgs.boson.BosonType#STRING_DEF}) and as a small integer
+     * index every time after that (as {@link io.higgs.boson.BosonType#STRING_REF}).
+     *
+     * @param stringTable true to write repeated structural strings as references
+     * @return this context
+     */
+    public WriterCtx stringTable(boolean stringTable) {
+      this.stringTable = stringTable;
+      return this;
+    }
+
+    /**
+     * Write arrays of primitives as {@link io.higgs.boson.BosonType#PACKED_ARRAY}, i.e. the component type and
+     * length once followed by the raw values, instead of a type tagged value per element.
+     *
+     * @param packedArrays true to pack primitive arrays
+     * @return this context
+     */
+    public WriterCtx packedArrays(boolean packedArrays) {
+      this.packedArrays = packedArrays;
+      return this;
+    }
+
+    /**
+     * Write lists, sets, maps, arrays and POLOs with a header giving the number of bytes they take up, the number of
+     * string table entries they define and the number of references they assign. A reader can then skip over a
+     * container without parsing it. The header costs 12 bytes per container.
+     * <p>
+     * The header is filled in once the container has been written so outputs which can't overwrite earlier bytes,
+     * i.e. streams, are sent the message once it has been encoded in full.
+     *
+     * @param sizedContainers true to write container sizes
+     * @return this context
+     */
+    public WriterCtx sizedContainers(boolean sizedContainers) {
+      this.sizedContainers = sizedContainers;
+      return this;
+    }
+
+    /**
+     * Write the size of the message, as a 4 byte int, straight after the version byte so messages written back to
+     * back on a stream or in a file can be split without parsing them, see {@link BosonFrameReader}. The size
+     * doesn't include the version byte or the size itself.
+     * <p>
+     * As with {@link #sizedContainers(boolean)} the size is filled in once the message has been written so outputs
+     * which can't overwrite earlier bytes are sent the message once it has been encoded in full.
+     *
+     * @param framed true to write the message's size
+     * @return this context
+     */
+    public WriterCtx framed(boolean framed) {
+      this.framed = framed;
+      return this;
+    }
+
+    /**
+     * Deflate the payload of messages, everything after the version byte and size, once it reaches the given number
+     * of bytes. Smaller messages rarely shrink enough to be worth the time so they, and any message deflate doesn't
+     * make smaller, are written as usual. The deflated payload is preceded by its original size and its deflated
+     * size, both 4 byte ints, and the {@link #COMPRESSED} flag is set. Readers inflate it transparently, see
+     * {@link BosonReader.ReaderCtx#maxInflatedSize(int)}.
+     * <p>
+     * Compressed messages are always encoded in full in memory before they are written out.
+     *
+     * @param compressionThreshold the smallest payload to compress in bytes, {@link #NO_COMPRESSION} to never
+     *                             compress
+     * @return this context
+     */
+    public WriterCtx compressionThreshold(int compressionThreshold) {
+      if (compressionThreshold < NO_COMPRESSION) {
+        throw new IllegalArgumentException(format("Invalid compression threshold %s", compressionThreshold));
+      }
+      this.compressionThreshold = compressionThreshold;
+      return this;
+    }
+
+    /**
+     * Choose how POLOs are tracked so repeated and circular references can be written, see {@link References}.
+     *
+     * @param referenceMode which POLOs get a reference number
+     * @return this context
+     */
+    public WriterCtx references(References referenceMode) {
+      if (referenceMode == null) {
+        throw new IllegalArgumentException("Reference mode is required");
+      }
+      this.referenceMode = referenceMode;
+      return this;
+    }
+
+    /**
+     * Without reference tracking a cycle would recurse forever, so writing fails once POLOs nest this deeply.
+     *
+     * @param maxDepth the deepest nesting of untracked POLOs allowed
+     * @return this context
+     */
+    public WriterCtx maxDepth(int maxDepth) {
+      if (maxDepth < 1) {
+        throw new IllegalArgumentException("Max depth must be at least 1");
+      }
+      this.maxDepth = maxDepth;
+      return this;
+    }
+
+    /**
+     * @param maxRetainedCapacity the largest buffer, in bytes, this context keeps between messages
+     * @return this context
+     */
+    public WriterCtx maxRetainedCapacity(int maxRetainedCapacity) {
+      this.maxRetainedCapacity = maxRetainedCapacity;
+      return this;
+    }
+
+    /**
+     * @return the number of bytes encoded into this context since it was last reset
+     */
+    public int size() {
+      return heap.size();
+    }
+
+    /**
+     * Access the encoded bytes without copying them. Only the first {@link #size()} bytes are valid and only until
+     * the context is reset or written to again.
+     *
+     * @return the context's backing array
+     */
+    public byte[] array() {
+      return heap.array();
+    }
+
+    /**
+     * @return a copy of the encoded bytes
+     */
+    public byte[] toByteArray() {
+      return heap.toByteArray();
+    }
+  }
+
+  /**
+   * How a {@link WriterCtx} keeps track of POLOs it has written
+   */
+  public enum References {
+    /**
+     * Every POLO gets a reference number and is written once, later occurrences are written as references.
+     * This is the default and handles any object graph.
+     */
+    ALL,
+    /**
+     * POLOs are written as {@link io.higgs.boson.BosonType#COMPACT_POLO} with no reference number and no tracking.
+     * Only suitable for trees, an object reached twice is written twice and a cycle fails once
+     * {@link WriterCtx#maxDepth(int)} is exceeded.
+     */
+    NONE,
+    /**
+     * The message is walked once before it is written to find POLOs reachable more than once, only those are
+     * tracked and given reference numbers, everything else is written as in {@link #NONE}.
+     */
+    SHARED
   }
 
   protected BosonWriter() {
@@ -104,16 +476,22 @@ public class BosonWriter {
 
   /**
    * Serialize any object to a series of bytes.
+   * This uses a context pooled by the calling thread so the only allocation per call is the returned array.
    *
    * @param msg the message to serialize
    * @return a series of bytes representing the message
    */
   public static byte[] encode(Object msg) {
-    return encode(msg, new WriterCtx());
+    return encode(msg, false);
   }
 
   public static byte[] encode(Object msg, boolean serialiseFinalFields) {
-    return encode(msg, new WriterCtx(serialiseFinalFields));
+    WriterCtx ctx = WriterCtx.acquire().serialiseFinalFields(serialiseFinalFields);
+    try {
+      return encode(msg, ctx);
+    } finally {
+      ctx.release();
+    }
   }
 
   public static byte[] encode(Object msg, WriterCtx ctx) {
@@ -121,99 +499,344 @@ public class BosonWriter {
   }
 
   public static byte[] encode(Object msg, WriterCtx ctx, BosonWriter writer) {
+    write(msg, ctx, writer);
+    return ctx.toByteArray();
+  }
+
+  /**
+   * Serialize a message into the given context without copying the result.
+   * The context is reset first, the encoded bytes are then available via {@link WriterCtx#array()}.
+   *
+   * @param msg    the message to serialize
+   * @param ctx    the context to write to
+   * @param writer the writer to use
+   * @return the number of bytes written
+   */
+  public static int write(Object msg, WriterCtx ctx, BosonWriter writer) {
+    return (int) write(msg, ctx, writer, ctx.heap);
+  }
+
+  /**
+   * Serialize a message directly into a caller owned buffer, starting at the buffer's position.
+   * On success the buffer's position is advanced past the message.
+   *
+   * @param msg    the message to serialize
+   * @param target the buffer to write to, heap or direct
+   * @return the number of bytes written
+   * @throws BosonBufferOverflowException if the message doesn't fit in the buffer's remaining space, the buffer's
+   *                                      position is left unchanged
+   */
+  public static int encode(Object msg, ByteBuffer target) {
+    return encode(msg, new ByteBufferOutput(target));
+  }
+
+  /**
+   * Serialize a message into a buffer which can grow through its allocator, see {@link ByteBufferOutput}.
+   *
+   * @param msg the message to serialize
+   * @param out the output to write to, {@link ByteBufferOutput#buffer()} holds the message afterwards
+   * @return the number of bytes written
+   */
+  public static int encode(Object msg, ByteBufferOutput out) {
+    return (int) encode(msg, (BosonOutput) out);
+  }
+
+  /**
+   * Stream a message to the given output stream through a fixed size chunk, see {@link StreamOutput}.
+   * The whole message is never held in memory.
+   *
+   * @param msg    the message to serialize
+   * @param stream the stream to write to, it is flushed but not closed
+   * @return the number of bytes written
+   */
+  public static long encode(Object msg, OutputStream stream) {
+    return encode(msg, new StreamOutput(stream));
+  }
+
+  /**
+   * Stream a message to a blocking channel through a fixed size chunk, see {@link StreamOutput}.
+   *
+   * @param msg     the message to serialize
+   * @param channel the channel to write to, it is not closed
+   * @return the number of bytes written
+   */
+  public static long encode(Object msg, WritableByteChannel channel) {
+    return encode(msg, new StreamOutput(channel));
+  }
+
+  /**
+   * Write a message to a file, replacing its contents. The message is streamed through a chunk so it never has to
+   * fit in memory, read it back with {@link BosonReader#decode(Path)}.
+   *
+   * @param msg  the message to serialize
+   * @param file the file to write to, created if it doesn't exist
+   * @return the number of bytes written
+   */
+  public static long encode(Object msg, Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      return encode(msg, new StreamOutput(channel, FILE_CHUNK_SIZE));
+    } catch (IOException ioe) {
+      throw new InvalidDataException(format("Unable to write to %s", file), ioe);
+    }
+  }
+
+  /**
+   * Serialize a message to any output using a context pooled by the calling thread.
+   *
+   * @param msg the message to serialize
+   * @param out where to write the message
+   * @return the number of bytes written
+   */
+  public static long encode(Object msg, BosonOutput out) {
+    WriterCtx ctx = WriterCtx.acquire();
     try {
-      ctx.buffer.writeByte(WriterCtx.version);
+      return write(msg, ctx, instance, out);
+    } finally {
+      ctx.release();
+    }
+  }
+
+  /**
+   * Serialize a message to any output, the context's own buffer is not used.
+   *
+   * @param msg    the message to serialize
+   * @param ctx    the context tracking references, it is reset first
+   * @param writer the writer to use
+   * @param out    where to write the message
+   * @return the number of bytes written
+   */
+  public static long write(Object msg, WriterCtx ctx, BosonWriter writer, BosonOutput out) {
+    ctx.reset();
+    boolean staged = ctx.stages(out);
+    ctx.buffer = staged ? ctx.heap : out;
+    long start = out.position();
+    try {
+      long frame = writeHeader(ctx);
+      if (ctx.referenceMode == References.SHARED) {
+        writer.findShared(ctx, msg);
+      }
       writer.validateAndWriteType(ctx, msg);
+      closeMessage(ctx, frame);
+      if (staged) {
+        out.write(ctx.heap.array(), 0, ctx.heap.size());
+      }
+      out.flush();
     } catch (IOException ioe) {
       throw new InvalidDataException("Serialisation error", ioe);
+    } finally {
+      ctx.buffer = ctx.heap;
     }
-    return ctx.arr.toByteArray(); //not sure there's a way to avoid the memory copy here
-  }
-
-  private void writeDateLike(WriterCtx ctx, Object param) throws IOException {
-    if (param instanceof Date) {
-      ctx.buffer.writeByte(DATE.id);
-      ctx.buffer.writeLong(((Date) param).getTime());
-    } else if (param instanceof LocalDate) {
-      ctx.buffer.writeByte(LOCAL_DATE.id);
-      ctx.buffer.writeLong(((LocalDate) param).toEpochDay());
-    } else if (param instanceof LocalDateTime) {
-      ctx.buffer.writeByte(LOCAL_DATETIME.id);
-      writeString(ctx, ((LocalDateTime) param).toString());
-    } else if (param instanceof LocalTime) {
-      ctx.buffer.writeByte(LOCALTIME.id);
-      writeString(ctx, ((LocalTime) param).toString());
-    } else if (param instanceof Duration) { //todo add other Java 8+ date types
-      ctx.buffer.writeByte(DURATION.id);
-      //ISO-8601 seconds based representation, such as PT8H6M12.345S.
-      //see https://docs.oracle.com/javase/8/docs/api/java/time/Duration.html#toString--
-      writeString(ctx, param.toString());
-    } else if (param instanceof Period) {
-      ctx.buffer.writeByte(PERIOD.id);
-      //Outputs this period as a String, such as P6Y3M1D.
-      //see https://docs.oracle.com/javase/8/docs/api/java/time/Period.html#toString--
-      writeString(ctx, param.toString());
-    } else if (param instanceof org.joda.time.DateTime) {
-      ctx.buffer.writeByte(JODA_DATETIME.id);
-      ctx.buffer.writeLong(((DateTime) param).getMillis());
-    } else if (param instanceof org.joda.time.LocalDate) {
-      ctx.buffer.writeByte(JODA_LOCAL_DATE.id);
-      writeString(ctx, param.toString()); //ISO8601
-    } else if (param instanceof org.joda.time.LocalDateTime) {
-      ctx.buffer.writeByte(JODA_LOCAL_DATE_TIME.id);
-      writeString(ctx, param.toString()); //Outputs ISO8601
-    } else if (param instanceof org.joda.time.LocalTime) {
-      ctx.buffer.writeByte(JODA_LOCALTIME.id);
-      writeString(ctx, param.toString()); //ISO8601 format (HH:mm:ss.SSS).
-    } else if (param instanceof org.joda.time.Duration) {
-      ctx.buffer.writeByte(JODA_DURATION.id);
-      writeString(ctx, param.toString()); //ISO8601
-    } else if (param instanceof org.joda.time.Interval) {
-      ctx.buffer.writeByte(JODA_INTERVAL.id);
-      writeString(ctx, param.toString()); //ISO8601
-    } else if (param instanceof org.joda.time.Period) {
-      ctx.buffer.writeByte(JODA_PERIOD.id);
-      writeString(ctx, ((org.joda.time.Period) param).toString(ISOPeriodFormat.standard()));
-    } else {
-      writeOther(ctx, param);
+    return out.position() - start;
+  }
+
+  /**
+   * Serialize many messages into one batch with the default writer, see
+   * {@link #writeBatch(Iterable, WriterCtx, BosonWriter)}
+   *
+   * @param messages the messages to serialize
+   * @param ctx      the context to write to
+   * @return the batch
+   */
+  public static byte[] encodeBatch(Iterable<?> messages, WriterCtx ctx) {
+    writeBatch(messages, ctx, instance);
+    return ctx.toByteArray();
+  }
+
+  /**
+   * Serialize many messages into one batch without copying the result, read it with {@link BosonBatch}. The batch
+   * has a single version byte, the names of classes, fields and enums are written once for the whole batch in a
+   * string table at its end and each message refers to them by index. An index after the messages gives where each
+   * one starts so any one of them can be decoded on its own.
+   * <p>
+   * The context's settings apply to every message, except that its string table setting is ignored as a batch
+   * always has one. References don't cross messages, each message numbers its POLOs from 0. The context is reset
+   * first, the encoded bytes are then available via {@link WriterCtx#array()}.
+   *
+   * @param messages the messages to serialize
+   * @param ctx      the context to write to
+   * @param writer   the writer to use
+   * @return the number of bytes written
+   */
+  public static int writeBatch(Iterable<?> messages, WriterCtx ctx, BosonWriter writer) {
+    ctx.reset();
+    ctx.batch = true;
+    try {
+      long frame = writeHeader(ctx);
+      long index = ctx.heap.position();
+      ctx.heap.writeInt(0); //where the index starts
+      int[] offsets = new int[16];
+      int count = 0;
+      for (Object msg : messages) {
+        if (count == offsets.length) {
+          offsets = Arrays.copyOf(offsets, count << 1);
+        }
+        offsets[count++] = position(ctx);
+        ctx.resetReferences();
+        if (ctx.referenceMode == References.SHARED) {
+          writer.findShared(ctx, msg);
+        }
+        writer.validateAndWriteType(ctx, msg);
+      }
+      ctx.heap.patchInt(index, position(ctx));
+      ctx.heap.writeInt(count);
+      for (int i = 0; i < count; i++) {
+        ctx.heap.writeInt(offsets[i]);
+      }
+      String[] table = new String[ctx.strings.size()];
+      for (Map.Entry<String, Integer> e : ctx.strings.entrySet()) {
+        table[e.getValue()] = e.getKey();
+      }
+      ctx.heap.writeInt(table.length);
+      for (String s : table) {
+        writer.writeUtf8(ctx, s);
+      }
+      closeMessage(ctx, frame);
+    } catch (IOException ioe) {
+      throw new InvalidDataException("Serialisation error", ioe);
+    } finally {
+      ctx.batch = false;
+    }
+    return ctx.heap.size();
+  }
+
+  private static int position(WriterCtx ctx) {
+    long position = ctx.heap.position();
+    if (position > Integer.MAX_VALUE) {
+      throw new InvalidDataException(format("Batch of %s bytes is too large", position), null);
+    }
+    return (int) position;
+  }
+
+  /**
+   * Write the start of a message, the version byte and, if the message is framed, room for its size
+   *
+   * @return where the message's size goes or -1 if it isn't framed
+   */
+  static long writeHeader(WriterCtx ctx) throws IOException {
+    ctx.buffer.writeByte(ctx.header());
+    if (!ctx.framed) {
+      return -1;
+    }
+    long frame = ctx.buffer.position();
+    ctx.buffer.writeInt(0);
+    return frame;
+  }
+
+  /**
+   * Finish a message once all of it has been written, its size is filled in and it is compressed if it should be
+   *
+   * @param frame where the size goes, as returned by {@link #writeHeader(WriterCtx)}
+   */
+  static void closeMessage(WriterCtx ctx, long frame) throws IOException {
+    closeFrame(ctx, frame);
+    if (ctx.compressionThreshold != WriterCtx.NO_COMPRESSION) {
+      compress(ctx, frame < 0 ? 1 : (int) frame + 4);
+    }
+  }
+
+  /**
+   * Replace the payload in the context's buffer with its deflated form if it is large enough and deflating it pays
+   *
+   * @param payload where the payload starts
+   */
+  private static void compress(WriterCtx ctx, int payload) {
+    int length = ctx.heap.size() - payload;
+    if (length < ctx.compressionThreshold) {
+      return;
+    }
+    if (ctx.deflated == null) {
+      ctx.deflated = new ByteArrayOutput();
+    }
+    ByteArrayOutput deflated = ctx.deflated;
+    deflated.reset(ctx.maxRetainedCapacity);
+    Compression.deflate(ctx.heap.array(), payload, length, deflated);
+    if (deflated.size() + 8 >= length) {
+      return;
+    }
+    ctx.heap.truncate(payload);
+    ctx.heap.writeInt(length);
+    ctx.heap.writeInt(deflated.size());
+    ctx.heap.write(deflated.array(), 0, deflated.size());
+    ctx.heap.array()[0] |= WriterCtx.COMPRESSED;
+    if (payload > 1) {
+      ctx.heap.patchInt(1, ctx.heap.size() - payload);
+    }
+  }
+
+  /**
+   * Fill in the size of a framed message once all of it has been written
+   */
+  private static void closeFrame(WriterCtx ctx, long frame) throws IOException {
+    if (frame < 0) {
+      return;
     }
+    long size = ctx.buffer.position() - frame - 4;
+    if (size > Integer.MAX_VALUE) {
+      throw new InvalidDataException(format("Message of %s bytes is too large to be framed", size), null);
+    }
+    ctx.buffer.patchInt(frame, (int) size);
   }
 
-  private void writeByte(WriterCtx ctx, byte b) throws IOException {
+  void writeByte(WriterCtx ctx, byte b) throws IOException {
     ctx.buffer.writeByte(BYTE.id);
     ctx.buffer.writeByte(b);
   }
 
-  private void writeNull(WriterCtx ctx) throws IOException {
+  void writeNull(WriterCtx ctx) throws IOException {
     ctx.buffer.writeByte(NULL.id);
   }
 
-  private void writeShort(WriterCtx ctx, short s) throws IOException {
+  void writeShort(WriterCtx ctx, short s) throws IOException {
     ctx.buffer.writeByte(SHORT.id);
     ctx.buffer.writeShort(s);
   }
 
-  private void writeInt(WriterCtx ctx, int i) throws IOException {
+  void writeInt(WriterCtx ctx, int i) throws IOException {
     ctx.buffer.writeByte(INT.id);
-    ctx.buffer.writeInt(i);
+    if (ctx.version == WriterCtx.VERSION_1) {
+      ctx.buffer.writeInt(i);
+    } else {
+      ctx.buffer.writeVarInt((i << 1) ^ (i >> 31)); //zigzag
+    }
   }
 
-  private void writeLong(WriterCtx ctx, long l) throws IOException {
+  void writeLong(WriterCtx ctx, long l) throws IOException {
     ctx.buffer.writeByte(LONG.id);
-    ctx.buffer.writeLong(l);
+    writeLongValue(ctx, l);
+  }
+
+  private void writeLongValue(WriterCtx ctx, long l) throws IOException {
+    if (ctx.version == WriterCtx.VERSION_1) {
+      ctx.buffer.writeLong(l);
+    } else {
+      ctx.buffer.writeVarLong((l << 1) ^ (l >> 63)); //zigzag
+    }
   }
 
-  private void writeFloat(WriterCtx ctx, float f) throws IOException {
+  /**
+   * Write a size, count, string table index or reference number.
+   * These are never negative so in version 2 they're written as unsigned varints.
+   */
+  void writeSize(WriterCtx ctx, int size) throws IOException {
+    if (ctx.version == WriterCtx.VERSION_1) {
+      ctx.buffer.writeInt(size);
+    } else {
+      ctx.buffer.writeVarInt(size);
+    }
+  }
+
+  void writeFloat(WriterCtx ctx, float f) throws IOException {
     ctx.buffer.writeByte(FLOAT.id);
     ctx.buffer.writeFloat(f);
   }
 
-  private void writeDouble(WriterCtx ctx, double d) throws IOException {
+  void writeDouble(WriterCtx ctx, double d) throws IOException {
     ctx.buffer.writeByte(DOUBLE.id);
     ctx.buffer.writeDouble(d);
   }
 
-  private void writeBoolean(WriterCtx ctx, boolean b) throws IOException {
+  void writeBoolean(WriterCtx ctx, boolean b) throws IOException {
     ctx.buffer.writeByte(BOOLEAN.id);
     if (b) {
       ctx.buffer.writeByte(1);
@@ -222,27 +845,59 @@ public class BosonWriter {
     }
   }
 
-  private void writeChar(WriterCtx ctx, char c) throws IOException {
+  void writeChar(WriterCtx ctx, char c) throws IOException {
     ctx.buffer.writeByte(CHAR.id);
     ctx.buffer.writeChar(c);
   }
 
-  private void writeString(WriterCtx ctx, String s) throws IOException {
+  void writeString(WriterCtx ctx, String s) throws IOException {
     ctx.buffer.writeByte(STRING.id); //type
-    byte[] str = s.getBytes(utf8);
-    ctx.buffer.writeInt(str.length); //size
-    ctx.buffer.write(str); //payload
+    writeUtf8(ctx, s);
+  }
+
+  void writeUtf8(WriterCtx ctx, String s) throws IOException {
+    int length = Utf8.encodedLength(s);
+    writeSize(ctx, length); //size
+    ctx.buffer.writeUtf8(s, length); //payload, encoded straight into the output
+  }
+
+  /**
+   * Write a structural string, i.e. a class, field or enum name. If the string table is enabled only the first
+   * occurrence in a message is written in full, later ones refer to it by index.
+   */
+  void writeSymbol(WriterCtx ctx, String s) throws IOException {
+    if (!ctx.stringTable && !ctx.batch) {
+      writeString(ctx, s);
+      return;
+    }
+    Integer idx = ctx.strings.get(s);
+    if (idx == null && ctx.batch) {
+      //the batch's string table is written after its messages, every occurrence is a reference to it
+      idx = ctx.strings.size();
+      ctx.strings.put(s, idx);
+    }
+    if (idx == null) {
+      ctx.strings.put(s, ctx.strings.size());
+      ctx.buffer.writeByte(STRING_DEF.id); //type
+      writeUtf8(ctx, s);
+    } else {
+      ctx.buffer.writeByte(STRING_REF.id); //type
+      writeSize(ctx, idx); //index into the message's string table
+    }
   }
 
   private void writeEnum(WriterCtx ctx, Enum param) throws IOException {
     ctx.buffer.writeByte(ENUM.id); //type
-    writeString(ctx, param.getClass().getName()); //enum class type
-    writeString(ctx, param.toString()); //enum value
+    writeSymbol(ctx, param.getClass().getName()); //enum class type
+    writeSymbol(ctx, param.toString()); //enum value
   }
 
   private void writeList(WriterCtx ctx, Iterator value, int size) throws IOException {
     ctx.buffer.writeByte(LIST.id); //type
-    ctx.buffer.writeInt(size); //size
+    int strings = ctx.strings.size();
+    int refs = ctx.reference.get();
+    long mark = openContainer(ctx);
+    writeSize(ctx, size); //size
     while (value.hasNext()) {
       Object param = value.next();
       if (param == null) {
@@ -251,11 +906,15 @@ public class BosonWriter {
         validateAndWriteType(ctx, param); //payload
       }
     }
+    closeContainer(ctx, mark, strings, refs);
   }
 
   private void writeSet(WriterCtx ctx, Set<Object> value) throws IOException {
     ctx.buffer.writeByte(SET.id); //type
-    ctx.buffer.writeInt(value.size()); //size
+    int strings = ctx.strings.size();
+    int refs = ctx.reference.get();
+    long mark = openContainer(ctx);
+    writeSize(ctx, value.size()); //size
     for (Object param : value) {
       if (param == null) {
         writeNull(ctx);
@@ -263,6 +922,7 @@ public class BosonWriter {
         validateAndWriteType(ctx, param); //payload
       }
     }
+    closeContainer(ctx, mark, strings, refs);
   }
 
   /**
@@ -272,29 +932,87 @@ public class BosonWriter {
    * @param value the value to write
    */
   private void writeArray(WriterCtx ctx, Object value) throws IOException {
+    if (ctx.packedArrays && value.getClass().getComponentType().isPrimitive()) {
+      writePackedArray(ctx, value);
+      return;
+    }
     ctx.buffer.writeByte(ARRAY.id); //type
+    int strings = ctx.strings.size();
+    int refs = ctx.reference.get();
+    long mark = openContainer(ctx);
     int length = Array.getLength(value);
-    ctx.buffer.writeInt(length); //size
-    writeString(ctx, value.getClass().getComponentType().getName()); //component type
+    writeSize(ctx, length); //size
+    writeSymbol(ctx, value.getClass().getComponentType().getName()); //component type
     for (int i = 0; i < length; i++) {
       validateAndWriteType(ctx, Array.get(value, i)); //payload
     }
+    closeContainer(ctx, mark, strings, refs);
+  }
+
+  /**
+   * Write an array of primitives without boxing, the component's Boson type is written once then all values in bulk.
+   * byte[] is not handled here as it has its own type.
+   */
+  private void writePackedArray(WriterCtx ctx, Object value) throws IOException {
+    ctx.buffer.writeByte(PACKED_ARRAY.id); //type
+    if (value instanceof int[]) {
+      int[] arr = (int[]) value;
+      writePackedHeader(ctx, INT, arr.length);
+      ctx.buffer.writeInts(arr);
+    } else if (value instanceof long[]) {
+      long[] arr = (long[]) value;
+      writePackedHeader(ctx, LONG, arr.length);
+      ctx.buffer.writeLongs(arr);
+    } else if (value instanceof double[]) {
+      double[] arr = (double[]) value;
+      writePackedHeader(ctx, DOUBLE, arr.length);
+      ctx.buffer.writeDoubles(arr);
+    } else if (value instanceof float[]) {
+      float[] arr = (float[]) value;
+      writePackedHeader(ctx, FLOAT, arr.length);
+      ctx.buffer.writeFloats(arr);
+    } else if (value instanceof short[]) {
+      short[] arr = (short[]) value;
+      writePackedHeader(ctx, SHORT, arr.length);
+      ctx.buffer.writeShorts(arr);
+    } else if (value instanceof char[]) {
+      char[] arr = (char[]) value;
+      writePackedHeader(ctx, CHAR, arr.length);
+      ctx.buffer.writeChars(arr);
+    } else if (value instanceof boolean[]) {
+      boolean[] arr = (boolean[]) value;
+      writePackedHeader(ctx, BOOLEAN, arr.length);
+      for (boolean b : arr) {
+        ctx.buffer.writeByte(b ? 1 : 0);
+      }
+    } else {
+      throw new UnsupportedBosonTypeException(format("%s can't be packed", value.getClass().getName()), null);
+    }
+  }
+
+  private void writePackedHeader(WriterCtx ctx, BosonType component, int length) throws IOException {
+    ctx.buffer.writeByte(component.id); //component type
+    writeSize(ctx, length); //size
   }
 
-  private void writeByteArray(WriterCtx ctx, byte[] value) throws IOException {
+  void writeByteArray(WriterCtx ctx, byte[] value) throws IOException {
     ctx.buffer.writeByte(BYTE_ARRAY.id); //type
-    ctx.buffer.writeInt(value.length); //size
+    writeSize(ctx, value.length); //size
     ctx.buffer.write(value); //payload
   }
 
   private void writeMap(WriterCtx ctx, Map<?, ?> value) throws IOException {
     ctx.buffer.writeByte(MAP.id); //type
-    ctx.buffer.writeInt(value.size()); //size
+    int strings = ctx.strings.size();
+    int refs = ctx.reference.get();
+    long mark = openContainer(ctx);
+    writeSize(ctx, value.size()); //size
     for (Object key : value.keySet()) {
       Object v = value.get(key);
       validateAndWriteType(ctx, key); //key payload
       validateAndWriteType(ctx, v); //value payload
     }
+    closeContainer(ctx, mark, strings, refs);
   }
 
   /**
@@ -311,86 +1029,177 @@ public class BosonWriter {
       validateAndWriteType(ctx, obj);
       return;
     }
-    Map<String, Object> data = new HashMap<>();
     Class<?> klass = obj.getClass();
-    if (obj instanceof JsonNode) {
-      if (obj instanceof ObjectNode) {
-        Iterator<Map.Entry<String, JsonNode>> it = ((ObjectNode) obj).fields();
-        while (it.hasNext()) {
-          Map.Entry<String, JsonNode> e = it.next();
-          data.put(e.getKey(), e.getValue());
-        }
-      } else if (obj instanceof ArrayNode) {
-        for (int i = 0; i < ((ArrayNode) obj).size(); i++) {
-          data.put(String.valueOf(i), ((ArrayNode) obj).get(i));
-        }
-      } else {
-        throw new IllegalStateException(format(
-          "Found %s, only array and object types are supported as POLOs",
-          klass.getName()
-        ));
-      }
-    } else {
-      writePoloFieldsViaReflection(ctx, klass, obj, data);
-    }
-    //if at least one field is allowed to be serialized
-    ctx.buffer.writeByte(POLO.id); //type
-    //write the POLO's reference number
-    ctx.buffer.writeInt(ref);
-    writeString(ctx, klass.getName()); //class name
-    ctx.buffer.writeInt(data.size()); //size
-    for (String key : data.keySet()) {
-      Object value = data.get(key);
-      writeString(ctx, key); //key payload must be a string
-      validateAndWriteType(ctx, value); //value payload
-    }
-  }
-
-  private void writePoloFieldsViaReflection(WriterCtx ctx, Class<?> klass, Object obj, Map<String, Object> data) {
-    Class<BosonProperty> propertyClass = BosonProperty.class;
-    boolean ignoreInheritedFields = false;
-    if (klass.isAnnotationPresent(propertyClass)) {
-      ignoreInheritedFields = klass.getAnnotation(propertyClass).ignoreInheritedFields();
-    }
-    //get ALL (private,private,protect,package) fields declared in the class - includes inherited fields
-    for (Field field : getAllFields(klass).values()) {
-      //if inherited fields are to be ignored then fields must be declared in the current class
-      if (ignoreInheritedFields && klass != field.getDeclaringClass()) {
-        continue;
+    int strings = ctx.strings.size();
+    //the POLO's own reference, if it has one, was assigned just before it is written
+    int refs = ref < 0 ? ctx.reference.get() : ref;
+    long mark;
+    if (obj instanceof ObjectNode) {
+      ObjectNode node = (ObjectNode) obj;
+      mark = writePoloHeader(ctx, klass.getName(), ref, node.size());
+      Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+      while (it.hasNext()) {
+        Map.Entry<String, JsonNode> e = it.next();
+        writeSymbol(ctx, e.getKey()); //key payload must be a string
+        validateAndWriteType(ctx, e.getValue()); //value payload
       }
-      if (Modifier.isTransient(field.getModifiers())) {
-        continue; //user doesn't want field serialised
-      }
-      if (!ctx.serialiseFinalFields && Modifier.isFinal(field.getModifiers())) {
-        continue; //no point in serializing final fields
-      }
-      boolean add = true;
-      String name = field.getName();
-      //add if annotated with BosonProperty
-      if (field.isAnnotationPresent(propertyClass)) {
-        BosonProperty ann = field.getAnnotation(propertyClass);
-        if (ann != null && !ann.value().isEmpty()) {
-          name = ann.value();
-        }
-        if ((ann != null) && ann.ignore()) {
-          add = false;
-        }
-        //if configured to ignore inherited fields then
-        //only fields declared in the object's class are allowed
-        if ((ann != null) && ann.ignoreInheritedFields() && field.getDeclaringClass() != klass) {
-          add = false;
-        }
+    } else if (obj instanceof ArrayNode) {
+      ArrayNode node = (ArrayNode) obj;
+      mark = writePoloHeader(ctx, klass.getName(), ref, node.size());
+      for (int i = 0; i < node.size(); i++) {
+        writeSymbol(ctx, String.valueOf(i));
+        validateAndWriteType(ctx, node.get(i));
       }
-      if (add) {
-        try {
-          data.put(name, field.get(obj));
-        } catch (IllegalAccessException e) {
-          log.warn(format("Unable to access field %s in class %s", field.getName(),
-            field.getDeclaringClass().getName()
-          ), e);
-        }
+    } else if (obj instanceof JsonNode) {
+      throw new IllegalStateException(format(
+        "Found %s, only array and object types are supported as POLOs",
+        klass.getName()
+      ));
+    } else {
+      mark = writePoloFields(ctx, PoloCodec.of(klass), obj, ref);
+    }
+    closeContainer(ctx, mark, strings, refs);
+  }
+
+  /**
+   * @return where the sized container header starts, see {@link #openContainer(WriterCtx)}
+   */
+  long writePoloHeader(WriterCtx ctx, String className, int ref, int size) throws IOException {
+    long mark;
+    if (ref < 0) {
+      ctx.buffer.writeByte(COMPACT_POLO.id); //untracked, no reference number
+      mark = openContainer(ctx);
+    } else {
+      ctx.buffer.writeByte(POLO.id); //type
+      mark = openContainer(ctx);
+      //write the POLO's reference number
+      writeSize(ctx, ref);
+    }
+    writeSymbol(ctx, className); //class name
+    writeSize(ctx, size); //size
+    return mark;
+  }
+
+  /**
+   * Reserve a sized container's header just after the container's type, it is filled in by
+   * {@link #closeContainer(WriterCtx, long, int, int)} once the container has been written.
+   *
+   * @return where the header starts or -1 if containers aren't sized
+   */
+  long openContainer(WriterCtx ctx) throws IOException {
+    if (!ctx.sizedContainers) {
+      return -1;
+    }
+    long mark = ctx.buffer.position();
+    ctx.buffer.writeInt(0); //bytes after the header
+    ctx.buffer.writeInt(0); //string table entries defined
+    ctx.buffer.writeInt(0); //references assigned
+    return mark;
+  }
+
+  /**
+   * @param strings the size of the string table when the container started
+   * @param refs    the first reference number which could be assigned within the container
+   */
+  void closeContainer(WriterCtx ctx, long mark, int strings, int refs) throws IOException {
+    if (mark < 0) {
+      return;
+    }
+    long length = ctx.buffer.position() - mark - WriterCtx.CONTAINER_HEADER;
+    if (length > Integer.MAX_VALUE) {
+      throw new InvalidDataException(format("Container of %s bytes is too large to be sized", length), null);
+    }
+    ctx.buffer.patchInt(mark, (int) length);
+    //a batch's strings are defined in its string table, never inside a container
+    ctx.buffer.patchInt(mark + 4, ctx.batch ? 0 : ctx.strings.size() - strings);
+    ctx.buffer.patchInt(mark + 8, ctx.reference.get() - refs);
+  }
+
+  /**
+   * Write the fields of a POLO straight from the object using the class' pre-computed field plan.
+   * The plan's size is the field count so fields are written as they are read, without being collected first.
+   *
+   * @return where the sized container header starts, if there is one
+   */
+  private long writePoloFields(WriterCtx ctx, PoloCodec codec, Object obj, int ref) throws IOException {
+    PoloCodec.Accessor[] fields = codec.plan(ctx.serialiseFinalFields);
+    long mark = writePoloHeader(ctx, codec.klass.getName(), ref, fields.length);
+    for (PoloCodec.Accessor field : fields) {
+      writeSymbol(ctx, field.name); //key payload must be a string
+      try {
+        writeField(ctx, field, obj); //value payload
+      } catch (IOException | RuntimeException e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new InvalidDataException(format("Unable to read field %s in class %s", field.field.getName(),
+          field.field.getDeclaringClass().getName()
+        ), t);
       }
     }
+    return mark;
+  }
+
+  private void writeField(WriterCtx ctx, PoloCodec.Accessor field, Object obj) throws Throwable {
+    if (field.primitive == null) {
+      validateAndWriteType(ctx, (Object) field.getter.invokeExact(obj));
+      return;
+    }
+    switch (field.primitive) {
+      case INT:
+        writeInt(ctx, (int) field.getter.invokeExact(obj));
+        break;
+      case LONG:
+        writeLong(ctx, (long) field.getter.invokeExact(obj));
+        break;
+      case DOUBLE:
+        writeDouble(ctx, (double) field.getter.invokeExact(obj));
+        break;
+      case FLOAT:
+        writeFloat(ctx, (float) field.getter.invokeExact(obj));
+        break;
+      case BOOLEAN:
+        writeBoolean(ctx, (boolean) field.getter.invokeExact(obj));
+        break;
+      case SHORT:
+        writeShort(ctx, (short) field.getter.invokeExact(obj));
+        break;
+      case BYTE:
+        writeByte(ctx, (byte) field.getter.invokeExact(obj));
+        break;
+      case CHAR:
+        writeChar(ctx, (char) field.getter.invokeExact(obj));
+        break;
+      default:
+        throw new IllegalStateException(format("%s is not a primitive type", field.primitive));
+    }
+  }
+
+  /**
+   * Write any supported value, including null. Custom {@link TypeWriter}s use this to write the values they
+   * convert to.
+   *
+   * @param ctx   the writer ctx
+   * @param param the param to write to the buffer
+   */
+  public void write(WriterCtx ctx, Object param) throws IOException {
+    validateAndWriteType(ctx, param);
+  }
+
+  /**
+   * Register a writer for a class and its subclasses. Registered writers take precedence over the built in types.
+   * Registering invalidates every class already resolved by this writer so it is best done up front.
+   *
+   * @param klass  the class to handle
+   * @param writer the writer for values of that class
+   * @param <T>    the type handled
+   * @return this writer
+   */
+  public synchronized <T> BosonWriter register(Class<T> klass, TypeWriter<? super T> writer) {
+    Map<Class<?>, TypeWriter<?>> updated = new LinkedHashMap<>(custom);
+    updated.put(klass, writer);
+    custom = updated;
+    dispatch = new Dispatch();
+    return this;
   }
 
   /**
@@ -401,101 +1210,234 @@ public class BosonWriter {
     if (param == null) {
       writeNull(ctx);
     } else {
-      if (param instanceof Byte) {
-        writeByte(ctx, (Byte) param);
-      } else if (param instanceof Short) {
-        writeShort(ctx, (Short) param);
-      } else if (param instanceof Integer) {
-        writeInt(ctx, (Integer) param);
-      } else if (param instanceof Long) {
-        writeLong(ctx, (Long) param);
-      } else if (param instanceof Float) {
-        writeFloat(ctx, (Float) param);
-      } else if (param instanceof Double) {
-        writeDouble(ctx, (Double) param);
-      } else if (param instanceof Boolean) {
-        writeBoolean(ctx, (Boolean) param);
-      } else if (param instanceof Character) {
-        writeChar(ctx, (Character) param);
-      } else if (param instanceof String) {
-        writeString(ctx, (String) param);
-      } else if (
-               param instanceof Date
-                 || param instanceof LocalDate
-                 || param instanceof LocalTime
-                 || param instanceof LocalDateTime //todo add other Java 8+ date types
-                 || param instanceof Duration
-                 || param instanceof Period
-                 || param instanceof org.joda.time.DateTime
-                 || param instanceof org.joda.time.LocalDate
-                 || param instanceof org.joda.time.LocalTime
-                 || param instanceof org.joda.time.LocalDateTime
-                 || param instanceof org.joda.time.Duration
-                 || param instanceof org.joda.time.Interval
-                 || param instanceof org.joda.time.Period
-      ) {
-        writeDateLike(ctx, param);
-      } else if (param instanceof TextNode) {
-        writeString(ctx, ((TextNode) param).textValue());
-      } else if (param instanceof ShortNode) {
-        writeShort(ctx, ((ShortNode) param).shortValue());
-      } else if (param instanceof IntNode) {
-        writeInt(ctx, ((IntNode) param).intValue());
-      } else if (param instanceof LongNode) {
-        writeLong(ctx, ((LongNode) param).longValue());
-      } else if (param instanceof DoubleNode) {
-        writeDouble(ctx, ((DoubleNode) param).doubleValue());
-      } else if (param instanceof FloatNode) {
-        writeFloat(ctx, ((FloatNode) param).floatValue());
-      } else if (param instanceof BooleanNode) {
-        writeBoolean(ctx, ((BooleanNode) param).booleanValue());
-      } else if (param instanceof NullNode) {
-        writeNull(ctx);
-      } else if (param instanceof BinaryNode) {
-        writeByteArray(ctx, ((BinaryNode) param).binaryValue());
-      } else if (param instanceof List) {
-        writeList(ctx, ((List<Object>) param).iterator(), ((List<Object>) param).size());
-      } else if (param instanceof Set) {
-        writeSet(ctx, (Set<Object>) param);
-      } else if (param instanceof Map) {
-        writeMap(ctx, (Map<Object, Object>) param);
-      } else if (param instanceof byte[]) {
-        writeByteArray(ctx, (byte[]) param);
-      } else if (param.getClass().isArray()) {
-        writeArray(ctx, param);
-      } else if (param instanceof Enum) {
-        writeEnum(ctx, (Enum) param);
-      } else {
-        writeOther(ctx, param);
+      dispatch.get(param.getClass()).write(this, ctx, param);
+    }
+  }
+
+  /**
+   * Find the writer for a class, this is the only place that walks the type hierarchy. The result is cached per
+   * class by {@link Dispatch}.
+   *
+   * @param cls the class of a value about to be written
+   * @return the writer for values of the class
+   */
+  @SuppressWarnings("unchecked")
+  private TypeWriter<Object> resolve(Class<?> cls) {
+    TypeWriter<?> registered = custom.get(cls);
+    if (registered == null) {
+      for (Map.Entry<Class<?>, TypeWriter<?>> e : custom.entrySet()) {
+        if (e.getKey().isAssignableFrom(cls)) {
+          registered = e.getValue();
+          break;
+        }
       }
     }
+    if (registered != null) {
+      return (TypeWriter<Object>) registered;
+    }
+    if (cls == Byte.class) {
+      return (w, ctx, v) -> w.writeByte(ctx, (Byte) v);
+    } else if (cls == Short.class) {
+      return (w, ctx, v) -> w.writeShort(ctx, (Short) v);
+    } else if (cls == Integer.class) {
+      return (w, ctx, v) -> w.writeInt(ctx, (Integer) v);
+    } else if (cls == Long.class) {
+      return (w, ctx, v) -> w.writeLong(ctx, (Long) v);
+    } else if (cls == Float.class) {
+      return (w, ctx, v) -> w.writeFloat(ctx, (Float) v);
+    } else if (cls == Double.class) {
+      return (w, ctx, v) -> w.writeDouble(ctx, (Double) v);
+    } else if (cls == Boolean.class) {
+      return (w, ctx, v) -> w.writeBoolean(ctx, (Boolean) v);
+    } else if (cls == Character.class) {
+      return (w, ctx, v) -> w.writeChar(ctx, (Character) v);
+    } else if (cls == String.class) {
+      return (w, ctx, v) -> w.writeString(ctx, (String) v);
+    } else if (Date.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> {
+        ctx.buffer.writeByte(DATE.id);
+        w.writeLongValue(ctx, ((Date) v).getTime());
+      };
+    } else if (LocalDate.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> {
+        ctx.buffer.writeByte(LOCAL_DATE.id);
+        w.writeLongValue(ctx, ((LocalDate) v).toEpochDay());
+      };
+    } else if (LocalTime.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, LOCALTIME, v.toString());
+    } else if (LocalDateTime.class.isAssignableFrom(cls)) { //todo add other Java 8+ date types
+      return (w, ctx, v) -> w.writeTagged(ctx, LOCAL_DATETIME, v.toString());
+    } else if (Duration.class.isAssignableFrom(cls)) {
+      //ISO-8601 seconds based representation, such as PT8H6M12.345S.
+      //see https://docs.oracle.com/javase/8/docs/api/java/time/Duration.html#toString--
+      return (w, ctx, v) -> w.writeTagged(ctx, DURATION, v.toString());
+    } else if (Period.class.isAssignableFrom(cls)) {
+      //Outputs this period as a String, such as P6Y3M1D.
+      //see https://docs.oracle.com/javase/8/docs/api/java/time/Period.html#toString--
+      return (w, ctx, v) -> w.writeTagged(ctx, PERIOD, v.toString());
+    } else if (DateTime.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> {
+        ctx.buffer.writeByte(JODA_DATETIME.id);
+        w.writeLongValue(ctx, ((DateTime) v).getMillis());
+      };
+    } else if (org.joda.time.LocalDate.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, JODA_LOCAL_DATE, v.toString()); //ISO8601
+    } else if (org.joda.time.LocalTime.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, JODA_LOCALTIME, v.toString()); //ISO8601 format (HH:mm:ss.SSS).
+    } else if (org.joda.time.LocalDateTime.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, JODA_LOCAL_DATE_TIME, v.toString()); //Outputs ISO8601
+    } else if (org.joda.time.Duration.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, JODA_DURATION, v.toString()); //ISO8601
+    } else if (org.joda.time.Interval.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, JODA_INTERVAL, v.toString()); //ISO8601
+    } else if (org.joda.time.Period.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeTagged(ctx, JODA_PERIOD,
+        ((org.joda.time.Period) v).toString(ISOPeriodFormat.standard()));
+    } else if (TextNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeString(ctx, ((TextNode) v).textValue());
+    } else if (ShortNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeShort(ctx, ((ShortNode) v).shortValue());
+    } else if (IntNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeInt(ctx, ((IntNode) v).intValue());
+    } else if (LongNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeLong(ctx, ((LongNode) v).longValue());
+    } else if (DoubleNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeDouble(ctx, ((DoubleNode) v).doubleValue());
+    } else if (FloatNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeFloat(ctx, ((FloatNode) v).floatValue());
+    } else if (BooleanNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeBoolean(ctx, ((BooleanNode) v).booleanValue());
+    } else if (NullNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeNull(ctx);
+    } else if (BinaryNode.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeByteArray(ctx, ((BinaryNode) v).binaryValue());
+    } else if (List.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeList(ctx, ((List<Object>) v).iterator(), ((List<Object>) v).size());
+    } else if (Set.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeSet(ctx, (Set<Object>) v);
+    } else if (Map.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeMap(ctx, (Map<Object, Object>) v);
+    } else if (cls == byte[].class) {
+      return (w, ctx, v) -> w.writeByteArray(ctx, (byte[]) v);
+    } else if (cls.isArray()) {
+      return BosonWriter::writeArray;
+    } else if (Enum.class.isAssignableFrom(cls)) {
+      return (w, ctx, v) -> w.writeEnum(ctx, (Enum) v);
+    }
+    return polo;
+  }
+
+  private void writeTagged(WriterCtx ctx, BosonType type, String value) throws IOException {
+    ctx.buffer.writeByte(type.id);
+    writeString(ctx, value);
   }
 
   private void writeOther(final WriterCtx ctx, final Object param) throws IOException {
     if (param instanceof Throwable) {
       throw new UnsupportedOperationException("Cannot serialize throwable", (Throwable) param);
     }
-    //in reference list?
-    //can't use param.hashCode because recursive objects will StackOverFlow computing it in some cases
-    //e.g. Jackson's ObjectNode
-    int systemHashCode = System.identityHashCode(param);
-    Integer ref = ctx.references.get(systemHashCode);
+    if (ctx.referenceMode != References.ALL
+          && (ctx.referenceMode == References.NONE || ctx.shared.get(param) == IdentityIntMap.ABSENT)) {
+      writeUntracked(ctx, param);
+      return;
+    }
+    //in reference list? keyed on identity, param.hashCode could StackOverFlow on recursive objects
+    //e.g. Jackson's ObjectNode, and equal but distinct objects must each be written
+    int ref = ctx.reference.get();
+    int existing = ctx.references.putIfAbsent(param, ref);
     //no
-    if (ref == null) {
-      //assign unique reference number
-      ref = ctx.reference.getAndIncrement();
-      //add to reference list
-      ctx.references.put(systemHashCode, ref);
+    if (existing == IdentityIntMap.ABSENT) {
+      //claim the unique reference number just added to the reference list
+      ctx.reference.incrementAndGet();
       writePolo(ctx, param, ref);
     } else {
       //yes -  write reference
-      writeReference(ctx, ref);
+      writeReference(ctx, existing);
+    }
+  }
+
+  private void writeUntracked(WriterCtx ctx, Object param) throws IOException {
+    if (++ctx.depth > ctx.maxDepth) {
+      throw new InvalidDataException(format(
+        "POLOs nested more than %s deep, the message may contain a cycle which needs reference tracking",
+        ctx.maxDepth
+      ), null);
+    }
+    try {
+      writePolo(ctx, param, -1);
+    } finally {
+      ctx.depth--;
+    }
+  }
+
+  /**
+   * Walk the message without writing it to find the POLOs which are reachable more than once.
+   * This follows the same values the writer would: elements of collections, maps and arrays and the fields of
+   * POLOs. Values handled by a registered {@link TypeWriter} are not looked into.
+   */
+  private void findShared(WriterCtx ctx, Object msg) {
+    if (ctx.shared == null) {
+      ctx.shared = new IdentityIntMap();
+    }
+    IdentityIntMap seen = ctx.references;
+    ArrayDeque<Object> pending = new ArrayDeque<>();
+    if (msg != null) {
+      pending.push(msg);
+    }
+    while (!pending.isEmpty()) {
+      Object value = pending.pop();
+      Class<?> cls = value.getClass();
+      if (value instanceof Collection) {
+        for (Object o : (Collection<?>) value) {
+          push(pending, o);
+        }
+      } else if (value instanceof Map) {
+        for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+          push(pending, e.getKey());
+          push(pending, e.getValue());
+        }
+      } else if (value instanceof Object[]) {
+        for (Object o : (Object[]) value) {
+          push(pending, o);
+        }
+      } else if (dispatch.get(cls) == polo) {
+        if (seen.putIfAbsent(value, 0) != IdentityIntMap.ABSENT) {
+          ctx.shared.putIfAbsent(value, 0);
+          continue; //already walked
+        }
+        if (value instanceof JsonNode) {
+          for (JsonNode child : (JsonNode) value) {
+            push(pending, child);
+          }
+        } else {
+          for (PoloCodec.Accessor field : PoloCodec.of(cls).plan(ctx.serialiseFinalFields)) {
+            if (field.primitive == null) {
+              try {
+                push(pending, (Object) field.getter.invokeExact(value));
+              } catch (Throwable t) {
+                throw new InvalidDataException(format("Unable to read field %s in class %s",
+                  field.field.getName(), field.field.getDeclaringClass().getName()
+                ), t);
+              }
+            }
+          }
+        }
+      }
+    }
+    //the reference table was only borrowed to mark what has been visited
+    seen.clear();
+  }
+
+  private static void push(ArrayDeque<Object> pending, Object value) {
+    //values which can't contain a POLO are skipped here to keep the stack small
+    if (value != null && !(value instanceof String) && !(value instanceof Number) && !(value instanceof Boolean)) {
+      pending.push(value);
     }
   }
 
-  private void writeReference(WriterCtx ctx, Integer ref) throws IOException {
+  void writeReference(WriterCtx ctx, int ref) throws IOException {
     //if the object has been written already then write a negative reference
     ctx.buffer.writeByte(REFERENCE.id);
-    ctx.buffer.writeInt(ref);
+    writeSize(ctx, ref);
   }
 }
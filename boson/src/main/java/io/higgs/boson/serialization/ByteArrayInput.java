@@ -0,0 +1,147 @@
+package io.higgs.boson.serialization;
+
+import java.io.EOFException;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads Boson data from a range of a byte array with a plain index cursor. Nothing is synchronized or copied,
+ * strings are decoded straight from the array.
+ */
+public final class ByteArrayInput extends BosonInput {
+  private final byte[] buf;
+  private final int start;
+  private final int limit;
+  private int pos;
+
+  public ByteArrayInput(byte[] data) {
+    this(data, 0, data.length);
+  }
+
+  public ByteArrayInput(byte[] data, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > data.length - length) {
+      throw new IndexOutOfBoundsException(format("Range [%s, %s + %s) is outside an array of %s bytes",
+        offset, offset, length, data.length));
+    }
+    buf = data;
+    start = offset;
+    pos = offset;
+    limit = offset + length;
+  }
+
+  private void require(int n) throws EOFException {
+    if (limit - pos < n) {
+      throw new EOFException(format("Needed %s bytes but only %s remain", n, limit - pos));
+    }
+  }
+
+  @Override
+  public byte readByte() throws EOFException {
+    require(1);
+    return buf[pos++];
+  }
+
+  @Override
+  public short readShort() throws EOFException {
+    require(2);
+    return (short) ((buf[pos++] << 8) | (buf[pos++] & 0xFF));
+  }
+
+  @Override
+  public int readInt() throws EOFException {
+    require(4);
+    return getInt();
+  }
+
+  private int getInt() {
+    return (buf[pos++] << 24) | ((buf[pos++] & 0xFF) << 16) | ((buf[pos++] & 0xFF) << 8) | (buf[pos++] & 0xFF);
+  }
+
+  @Override
+  public long readLong() throws EOFException {
+    require(8);
+    return getLong();
+  }
+
+  private long getLong() {
+    return ((long) getInt() << 32) | (getInt() & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws EOFException {
+    require(len);
+    System.arraycopy(buf, pos, b, off, len);
+    pos += len;
+  }
+
+  @Override
+  public String readUtf8(int length) throws EOFException {
+    require(length);
+    String s = new String(buf, pos, length, UTF_8);
+    pos += length;
+    return s;
+  }
+
+  @Override
+  public void readInts(int[] v) throws EOFException {
+    require(v.length << 2);
+    for (int i = 0; i < v.length; i++) {
+      v[i] = getInt();
+    }
+  }
+
+  @Override
+  public void readLongs(long[] v) throws EOFException {
+    require(v.length << 3);
+    for (int i = 0; i < v.length; i++) {
+      v[i] = getLong();
+    }
+  }
+
+  @Override
+  public void readFloats(float[] v) throws EOFException {
+    require(v.length << 2);
+    for (int i = 0; i < v.length; i++) {
+      v[i] = Float.intBitsToFloat(getInt());
+    }
+  }
+
+  @Override
+  public void readDoubles(double[] v) throws EOFException {
+    require(v.length << 3);
+    for (int i = 0; i < v.length; i++) {
+      v[i] = Double.longBitsToDouble(getLong());
+    }
+  }
+
+  @Override
+  public long position() {
+    return pos - start;
+  }
+
+  @Override
+  public boolean canSeek() {
+    return true;
+  }
+
+  @Override
+  public void seek(long position) {
+    if (position < 0 || position > limit - start) {
+      throw new IndexOutOfBoundsException(format("Position %s is outside the %s bytes of input", position,
+        limit - start));
+    }
+    pos = start + (int) position;
+  }
+
+  @Override
+  public void skipBytes(int n) throws EOFException {
+    require(n);
+    pos += n;
+  }
+
+  @Override
+  public long remaining() {
+    return limit - pos;
+  }
+}
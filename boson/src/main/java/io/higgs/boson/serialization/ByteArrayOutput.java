@@ -0,0 +1,260 @@
+package io.higgs.boson.serialization;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * A growable, resettable byte buffer which writes big-endian values the same way {@link java.io.DataOutputStream}
+ * does. Unlike a {@link java.io.ByteArrayOutputStream} it is unsynchronized and keeps its backing array when reset
+ * so a {@link BosonWriter.WriterCtx} can be reused without re-allocating for every message.
+ */
+public final class ByteArrayOutput extends BosonOutput {
+  static final int DEFAULT_CAPACITY = 256;
+  private final int initialCapacity;
+  private byte[] buf;
+  private int count;
+
+  public ByteArrayOutput() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ByteArrayOutput(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+    }
+    this.initialCapacity = initialCapacity;
+    buf = new byte[initialCapacity];
+  }
+
+  private void ensureCapacity(int extra) {
+    int required = count + extra;
+    if (required < 0) {
+      throw new OutOfMemoryError("Boson message exceeds the maximum array size");
+    }
+    if (required > buf.length) {
+      int newCapacity = Math.max(buf.length << 1, required);
+      if (newCapacity < 0) {
+        newCapacity = Integer.MAX_VALUE - 8;
+      }
+      buf = Arrays.copyOf(buf, newCapacity);
+    }
+  }
+
+  @Override
+  public void writeByte(int v) {
+    ensureCapacity(1);
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensureCapacity(2);
+    buf[count++] = (byte) (v >>> 8);
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeChar(int v) {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensureCapacity(4);
+    putInt(v);
+  }
+
+  private void putInt(int v) {
+    buf[count++] = (byte) (v >>> 24);
+    buf[count++] = (byte) (v >>> 16);
+    buf[count++] = (byte) (v >>> 8);
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeLong(long v) {
+    ensureCapacity(8);
+    putLong(v);
+  }
+
+  private void putLong(long v) {
+    buf[count++] = (byte) (v >>> 56);
+    buf[count++] = (byte) (v >>> 48);
+    buf[count++] = (byte) (v >>> 40);
+    buf[count++] = (byte) (v >>> 32);
+    buf[count++] = (byte) (v >>> 24);
+    buf[count++] = (byte) (v >>> 16);
+    buf[count++] = (byte) (v >>> 8);
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeVarInt(int v) {
+    ensureCapacity(5);
+    while ((v & ~0x7F) != 0) {
+      buf[count++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeVarLong(long v) {
+    ensureCapacity(10);
+    while ((v & ~0x7FL) != 0) {
+      buf[count++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buf[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeShorts(short[] v) {
+    ensureCapacity(v.length << 1);
+    for (short x : v) {
+      buf[count++] = (byte) (x >>> 8);
+      buf[count++] = (byte) x;
+    }
+  }
+
+  @Override
+  public void writeChars(char[] v) {
+    ensureCapacity(v.length << 1);
+    for (char x : v) {
+      buf[count++] = (byte) (x >>> 8);
+      buf[count++] = (byte) x;
+    }
+  }
+
+  @Override
+  public void writeInts(int[] v) {
+    ensureCapacity(v.length << 2);
+    for (int x : v) {
+      putInt(x);
+    }
+  }
+
+  @Override
+  public void writeLongs(long[] v) {
+    ensureCapacity(v.length << 3);
+    for (long x : v) {
+      putLong(x);
+    }
+  }
+
+  @Override
+  public void writeFloats(float[] v) {
+    ensureCapacity(v.length << 2);
+    for (float x : v) {
+      putInt(Float.floatToIntBits(x));
+    }
+  }
+
+  @Override
+  public void writeDoubles(double[] v) {
+    ensureCapacity(v.length << 3);
+    for (double x : v) {
+      putLong(Double.doubleToLongBits(x));
+    }
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureCapacity(len);
+    System.arraycopy(b, off, buf, count, len);
+    count += len;
+  }
+
+  @Override
+  public void writeUtf8(String s, int encodedLength) {
+    ensureCapacity(encodedLength);
+    count = Utf8.encode(s, 0, s.length(), buf, count);
+  }
+
+  @Override
+  public boolean canPatch() {
+    return true;
+  }
+
+  @Override
+  public void patchInt(long position, int v) {
+    int end = count;
+    count = (int) position;
+    putInt(v);
+    count = end;
+  }
+
+  @Override
+  public long position() {
+    return count;
+  }
+
+  /**
+   * @return the number of bytes written since the last reset
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * @return the backing array, only the first {@link #size()} bytes are valid. The array is only valid until the
+   * next write or reset.
+   */
+  public byte[] array() {
+    return buf;
+  }
+
+  /**
+   * @return a copy of the bytes written since the last reset
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buf, count);
+  }
+
+  /**
+   * Discard everything written after the given number of bytes
+   */
+  void truncate(int size) {
+    count = size;
+  }
+
+  /**
+   * Write everything the deflater has left to give straight into the backing array, growing it as needed
+   */
+  void deflate(Deflater deflater) {
+    while (!deflater.finished()) {
+      if (count == buf.length) {
+        ensureCapacity(1);
+      }
+      count += deflater.deflate(buf, count, buf.length - count);
+    }
+  }
+
+  /**
+   * Discard everything written so far. The backing array is kept unless it has grown beyond maxRetainedCapacity,
+   * in which case it is replaced with one of the initial capacity so a single large message doesn't pin memory.
+   *
+   * @param maxRetainedCapacity the largest backing array to keep between messages
+   */
+  public void reset(int maxRetainedCapacity) {
+    count = 0;
+    if (buf.length > maxRetainedCapacity) {
+      buf = new byte[initialCapacity];
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package io.higgs.boson.serialization;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads Boson data from a {@link ByteBuffer}, heap or direct, starting at its current position and advancing it as
+ * values are read. Values are always read big-endian regardless of the buffer's {@link ByteBuffer#order()}.
+ */
+public final class ByteBufferInput extends BosonInput {
+  private final ByteBuffer buf;
+  private final boolean swap;
+  private final int start;
+
+  public ByteBufferInput(ByteBuffer source) {
+    buf = source;
+    start = source.position();
+    swap = source.order() != ByteOrder.BIG_ENDIAN;
+  }
+
+  @Override
+  public byte readByte() {
+    return buf.get();
+  }
+
+  @Override
+  public short readShort() {
+    short v = buf.getShort();
+    return swap ? Short.reverseBytes(v) : v;
+  }
+
+  @Override
+  public int readInt() {
+    int v = buf.getInt();
+    return swap ? Integer.reverseBytes(v) : v;
+  }
+
+  @Override
+  public long readLong() {
+    long v = buf.getLong();
+    return swap ? Long.reverseBytes(v) : v;
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) {
+    buf.get(b, off, len);
+  }
+
+  @Override
+  public String readUtf8(int length) {
+    if (!buf.hasArray()) {
+      byte[] bytes = new byte[length];
+      buf.get(bytes);
+      return new String(bytes, UTF_8);
+    }
+    int pos = buf.position();
+    if (buf.limit() - pos < length) {
+      throw new BufferUnderflowException();
+    }
+    String s = new String(buf.array(), buf.arrayOffset() + pos, length, UTF_8);
+    buf.position(pos + length);
+    return s;
+  }
+
+  @Override
+  public long position() {
+    return buf.position() - start;
+  }
+
+  @Override
+  public boolean canSeek() {
+    return true;
+  }
+
+  @Override
+  public void seek(long position) {
+    buf.position(start + (int) position);
+  }
+
+  @Override
+  public long remaining() {
+    return buf.remaining();
+  }
+
+  @Override
+  public void skipBytes(int n) {
+    if (buf.remaining() < n) {
+      throw new BufferUnderflowException();
+    }
+    buf.position(buf.position() + n);
+  }
+
+  /**
+   * @return the buffer being read, its position is just after the last byte read
+   */
+  public ByteBuffer buffer() {
+    return buf;
+  }
+}
@@ -0,0 +1,152 @@
+package io.higgs.boson.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntFunction;
+
+import static java.lang.String.format;
+
+/**
+ * Writes Boson data straight into a caller owned {@link ByteBuffer}, heap or direct, starting at its current
+ * position. Values are always written big-endian regardless of the buffer's {@link ByteBuffer#order()}.
+ * <p>
+ * If the buffer fills up and no allocator was provided a {@link BosonBufferOverflowException} is thrown and the
+ * buffer's position is restored to where the message started. With an allocator, a larger buffer is requested,
+ * everything written so far is copied into it and writing continues. {@link #buffer()} always returns the buffer
+ * which currently holds the message.
+ */
+public final class ByteBufferOutput extends BosonOutput {
+  private final IntFunction<ByteBuffer> allocator;
+  private ByteBuffer buf;
+  private boolean swap;
+  private int start;
+
+  public ByteBufferOutput(ByteBuffer target) {
+    this(target, null);
+  }
+
+  /**
+   * @param target    the buffer to write to
+   * @param allocator given the minimum capacity required, returns an empty buffer with at least that many bytes
+   *                  remaining, or null if overflow should be reported as an exception
+   */
+  public ByteBufferOutput(ByteBuffer target, IntFunction<ByteBuffer> allocator) {
+    this.allocator = allocator;
+    use(target);
+  }
+
+  private void use(ByteBuffer target) {
+    buf = target;
+    start = target.position();
+    swap = target.order() != ByteOrder.BIG_ENDIAN;
+  }
+
+  private void ensureRemaining(int n) {
+    if (buf.remaining() < n) {
+      grow(n);
+    }
+  }
+
+  private void grow(int n) {
+    int written = buf.position() - start;
+    if (allocator == null) {
+      int remaining = buf.remaining();
+      buf.position(start);
+      throw new BosonBufferOverflowException(format(
+        "Target buffer overflowed after %s bytes of the message, %s more bytes were needed but only %s remain",
+        written, n, remaining
+      ));
+    }
+    long required = (long) written + n;
+    if (required > Integer.MAX_VALUE) {
+      throw new BosonBufferOverflowException(format("Message of at least %s bytes can't fit in a ByteBuffer",
+        required));
+    }
+    int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(required, (long) buf.capacity() << 1));
+    ByteBuffer next = allocator.apply(capacity);
+    if (next == null || next.remaining() < required) {
+      throw new BosonBufferOverflowException(format(
+        "Allocator returned a buffer with %s bytes remaining but at least %s were required",
+        next == null ? 0 : next.remaining(), required
+      ));
+    }
+    ByteBuffer src = buf.duplicate();
+    src.limit(src.position());
+    src.position(start);
+    int nextStart = next.position();
+    next.put(src);
+    use(next);
+    start = nextStart;
+  }
+
+  @Override
+  public void writeByte(int v) {
+    ensureRemaining(1);
+    buf.put((byte) v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensureRemaining(2);
+    buf.putShort(swap ? Short.reverseBytes((short) v) : (short) v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensureRemaining(4);
+    buf.putInt(swap ? Integer.reverseBytes(v) : v);
+  }
+
+  @Override
+  public void writeLong(long v) {
+    ensureRemaining(8);
+    buf.putLong(swap ? Long.reverseBytes(v) : v);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureRemaining(len);
+    buf.put(b, off, len);
+  }
+
+  @Override
+  public void writeUtf8(String s, int encodedLength) throws IOException {
+    ensureRemaining(encodedLength);
+    if (buf.hasArray()) {
+      int pos = buf.arrayOffset() + buf.position();
+      buf.position(Utf8.encode(s, 0, s.length(), buf.array(), pos) - buf.arrayOffset());
+    } else {
+      super.writeUtf8(s, encodedLength);
+    }
+  }
+
+  @Override
+  public boolean canPatch() {
+    return true;
+  }
+
+  @Override
+  public void patchInt(long position, int v) {
+    buf.putInt(start + (int) position, swap ? Integer.reverseBytes(v) : v);
+  }
+
+  @Override
+  public long position() {
+    return buf.position() - start;
+  }
+
+  /**
+   * @return the buffer holding the message, this is the target given to the constructor unless it had to grow
+   */
+  public ByteBuffer buffer() {
+    return buf;
+  }
+
+  /**
+   * @return the number of bytes written
+   */
+  public int written() {
+    return buf.position() - start;
+  }
+}
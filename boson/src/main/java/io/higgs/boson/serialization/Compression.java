@@ -0,0 +1,55 @@
+package io.higgs.boson.serialization;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.lang.String.format;
+
+/**
+ * Deflates payloads for {@link BosonWriter.WriterCtx#compressionThreshold(int)} and inflates them again when they
+ * are read. Deflaters and inflaters hold native memory and are costly to create, so each thread keeps one of each
+ * and resets it between messages.
+ */
+final class Compression {
+  private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+  private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+  private Compression() {
+  }
+
+  /**
+   * Deflate bytes [off, off + len) of src onto the end of out
+   */
+  static void deflate(byte[] src, int off, int len, ByteArrayOutput out) {
+    Deflater deflater = DEFLATER.get();
+    deflater.reset();
+    deflater.setInput(src, off, len);
+    deflater.finish();
+    out.deflate(deflater);
+  }
+
+  /**
+   * Inflate bytes [off, off + len) of src, which must inflate to exactly size bytes, into dst at the given offset
+   */
+  static void inflate(byte[] src, int off, int len, byte[] dst, int at, int size) throws DataFormatException {
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(src, off, len);
+    int n = 0;
+    while (n < size) {
+      int k = inflater.inflate(dst, at + n, size - n);
+      if (k == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+        break;
+      }
+      n += k;
+    }
+    if (n == size && !inflater.finished()) {
+      //the checksum at the end may not have been read yet, nothing else may follow the payload
+      n += inflater.inflate(new byte[1]);
+    }
+    if (n != size || !inflater.finished()) {
+      throw new InvalidDataException(format("Compressed payload didn't inflate to its size of %s bytes", size), null);
+    }
+  }
+}
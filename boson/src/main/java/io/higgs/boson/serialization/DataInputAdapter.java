@@ -0,0 +1,64 @@
+package io.higgs.boson.serialization;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * Reads Boson data from any {@link DataInput}, e.g. a stream
+ */
+final class DataInputAdapter extends BosonInput {
+  private final DataInput in;
+  private long position;
+
+  DataInputAdapter(DataInput in) {
+    this.in = in;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    position += 1;
+    return in.readByte();
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    position += 2;
+    return in.readShort();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    position += 4;
+    return in.readInt();
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    position += 8;
+    return in.readLong();
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    in.readFully(b, off, len);
+    position += len;
+  }
+
+  @Override
+  public void skipBytes(int n) throws IOException {
+    while (n > 0) {
+      int skipped = in.skipBytes(n);
+      if (skipped <= 0) {
+        in.readByte(); //skipBytes makes no progress guarantee, force one byte to detect the end of the data
+        skipped = 1;
+      }
+      position += skipped;
+      n -= skipped;
+    }
+  }
+
+  @Override
+  public long position() {
+    return position;
+  }
+}
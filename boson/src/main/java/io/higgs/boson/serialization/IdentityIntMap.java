@@ -0,0 +1,142 @@
+package io.higgs.boson.serialization;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing map from object identity to a non-negative int, used to track which objects have already been
+ * written. Keys are compared with == so distinct objects never merge even when their identity hash codes collide,
+ * values are stored unboxed and neither lookups nor inserts allocate unless the table has to grow.
+ */
+public final class IdentityIntMap {
+  /**
+   * Returned by {@link #get(Object)} and {@link #putIfAbsent(Object, int)} when the key isn't in the map
+   */
+  public static final int ABSENT = -1;
+  static final int DEFAULT_CAPACITY = 64;
+  /**
+   * Tables with more slots than this are dropped by {@link #clear()} rather than kept for the next message
+   */
+  static final int MAX_RETAINED_CAPACITY = 1 << 16;
+  private static final int MAX_CAPACITY = 1 << 30;
+  private Object[] keys;
+  private int[] values;
+  private int size;
+  private int threshold;
+
+  public IdentityIntMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the initial number of slots, a power of two
+   */
+  IdentityIntMap(int capacity) {
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new Object[capacity];
+    values = new int[capacity];
+    //keep the load factor at or below 1/2 so probe sequences stay short
+    threshold = capacity >>> 1;
+  }
+
+  private static int slot(Object key, int mask) {
+    int h = System.identityHashCode(key);
+    //identity hashes are often sequential, spread them so neighbours don't cluster
+    h *= 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * @param key the object to look up
+   * @return the value mapped to the key or {@link #ABSENT}, null is never a key so it is always absent
+   */
+  public int get(Object key) {
+    //an empty slot holds null, matching it would return whatever value the slot last had
+    if (key == null) {
+      return ABSENT;
+    }
+    Object[] k = keys;
+    int mask = k.length - 1;
+    for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+      Object existing = k[i];
+      if (existing == key) {
+        return values[i];
+      }
+      if (existing == null) {
+        return ABSENT;
+      }
+    }
+  }
+
+  /**
+   * Map the key to the value unless it is already mapped, in a single probe.
+   *
+   * @param key   the object to add
+   * @param value the value to map it to, must not be negative
+   * @return the existing value if the key was already present, otherwise {@link #ABSENT}
+   */
+  public int putIfAbsent(Object key, int value) {
+    if (key == null) {
+      throw new IllegalArgumentException("Null keys are not supported");
+    }
+    Object[] k = keys;
+    int mask = k.length - 1;
+    int i = slot(key, mask);
+    for (Object existing = k[i]; existing != null; existing = k[i]) {
+      if (existing == key) {
+        return values[i];
+      }
+      i = (i + 1) & mask;
+    }
+    k[i] = key;
+    values[i] = value;
+    if (++size > threshold) {
+      resize();
+    }
+    return ABSENT;
+  }
+
+  private void resize() {
+    Object[] oldKeys = keys;
+    int[] oldValues = values;
+    if (oldKeys.length == MAX_CAPACITY) {
+      throw new IllegalStateException("Too many objects in a single Boson message");
+    }
+    allocate(oldKeys.length << 1);
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      Object key = oldKeys[j];
+      if (key != null) {
+        int i = slot(key, mask);
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove all keys so they are no longer reachable from this map. The table keeps its capacity unless it has grown
+   * beyond {@link #MAX_RETAINED_CAPACITY} slots.
+   */
+  public void clear() {
+    if (keys.length > MAX_RETAINED_CAPACITY) {
+      allocate(DEFAULT_CAPACITY);
+    } else if (size != 0) {
+      Arrays.fill(keys, null);
+    }
+    size = 0;
+  }
+}
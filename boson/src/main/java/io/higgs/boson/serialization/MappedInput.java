@@ -0,0 +1,172 @@
+package io.higgs.boson.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads Boson data straight from a memory mapped file so nothing is copied onto the heap up front.
+ * A single {@link java.nio.MappedByteBuffer} can't exceed 2GB so the file is mapped as a series of segments, values
+ * which straddle two segments are assembled a byte at a time, everything else is read from the current segment.
+ * <p>
+ * The mapping stays valid once the channel is closed and is released when this input is garbage collected.
+ */
+public final class MappedInput extends BosonInput {
+  static final int SEGMENT_SIZE = 1 << 30;
+  private final ByteBuffer[] segments;
+  private final long[] offsets;
+  private final int segmentSize;
+  private int index;
+  private ByteBuffer current;
+  private byte[] scratch = new byte[64];
+
+  private MappedInput(ByteBuffer[] segments, long[] offsets, int segmentSize) {
+    this.segments = segments;
+    this.offsets = offsets;
+    this.segmentSize = segmentSize;
+    current = segments.length == 0 ? ByteBuffer.allocate(0) : segments[0];
+  }
+
+  /**
+   * Map the whole of a file for reading
+   *
+   * @param channel a channel opened for reading, it may be closed once this returns
+   * @return an input positioned at the start of the file
+   */
+  public static MappedInput map(FileChannel channel) throws IOException {
+    return map(channel, 0, channel.size(), SEGMENT_SIZE);
+  }
+
+  static MappedInput map(FileChannel channel, long position, long size, int segmentSize) throws IOException {
+    int count = (int) ((size + segmentSize - 1) / segmentSize);
+    ByteBuffer[] segments = new ByteBuffer[count];
+    long[] offsets = new long[count];
+    for (int i = 0; i < count; i++) {
+      offsets[i] = (long) i * segmentSize;
+      long length = Math.min(segmentSize, size - offsets[i]);
+      segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + offsets[i], length)
+                      .order(ByteOrder.BIG_ENDIAN);
+    }
+    return new MappedInput(segments, offsets, segmentSize);
+  }
+
+  /**
+   * Move on to the next segment once the current one is exhausted
+   */
+  private ByteBuffer next() throws EOFException {
+    while (!current.hasRemaining()) {
+      if (index + 1 >= segments.length) {
+        throw new EOFException(format("End of mapped data reached after %s bytes", position()));
+      }
+      current = segments[++index];
+      //an earlier pass, before a seek, may have left the segment part way through
+      current.position(0);
+    }
+    return current;
+  }
+
+  @Override
+  public byte readByte() throws EOFException {
+    return (current.hasRemaining() ? current : next()).get();
+  }
+
+  @Override
+  public short readShort() throws EOFException {
+    if (current.remaining() >= 2) {
+      return current.getShort();
+    }
+    return (short) ((readByte() << 8) | (readByte() & 0xFF));
+  }
+
+  @Override
+  public int readInt() throws EOFException {
+    if (current.remaining() >= 4) {
+      return current.getInt();
+    }
+    return (readShort() << 16) | (readShort() & 0xFFFF);
+  }
+
+  @Override
+  public long readLong() throws EOFException {
+    if (current.remaining() >= 8) {
+      return current.getLong();
+    }
+    return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws EOFException {
+    while (len > 0) {
+      ByteBuffer segment = current.hasRemaining() ? current : next();
+      int n = Math.min(len, segment.remaining());
+      segment.get(b, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public String readUtf8(int length) throws EOFException {
+    //mapped buffers have no accessible array, decode from a reused scratch array rather than a new one per string
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length << 1)];
+    }
+    readFully(scratch, 0, length);
+    return new String(scratch, 0, length, UTF_8);
+  }
+
+  /**
+   * @return the offset from the start of the mapped region of the next byte to be read
+   */
+  @Override
+  public long position() {
+    return segments.length == 0 ? 0 : offsets[index] + current.position();
+  }
+
+  @Override
+  public boolean canSeek() {
+    return true;
+  }
+
+  @Override
+  public void seek(long position) throws EOFException {
+    if (segments.length == 0) {
+      if (position != 0) {
+        throw new EOFException(format("Can't seek to %s, nothing is mapped", position));
+      }
+      return;
+    }
+    //a position at the very end belongs to the last segment rather than one past it
+    int i = (int) Math.min(segments.length - 1, position / segmentSize);
+    if (position < 0 || position - offsets[i] > segments[i].limit()) {
+      throw new EOFException(format("Position %s is outside the mapped data", position));
+    }
+    index = i;
+    current = segments[i];
+    current.position((int) (position - offsets[i]));
+  }
+
+  @Override
+  public long remaining() {
+    if (segments.length == 0) {
+      return 0;
+    }
+    int last = segments.length - 1;
+    return offsets[last] + segments[last].limit() - position();
+  }
+
+  @Override
+  public void skipBytes(int n) throws EOFException {
+    while (n > 0) {
+      ByteBuffer segment = current.hasRemaining() ? current : next();
+      int skip = Math.min(n, segment.remaining());
+      segment.position(segment.position() + skip);
+      n -= skip;
+    }
+  }
+}
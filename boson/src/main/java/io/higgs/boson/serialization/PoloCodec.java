@@ -0,0 +1,195 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.BosonType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.higgs.core.reflect.ReflectionUtil.getAllFields;
+import static java.lang.String.format;
+
+/**
+ * A per-class codec built the first time a POLO class is written or read.
+ * All annotation and modifier checks happen once here, each field is then accessed through a {@link MethodHandle}
+ * adapted to its exact type so primitive fields are read and written without boxing.
+ */
+final class PoloCodec {
+  private static final Logger log = LoggerFactory.getLogger(PoloCodec.class);
+  private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+  private static final ClassValue<PoloCodec> codecs = new ClassValue<PoloCodec>() {
+    @Override
+    protected PoloCodec computeValue(Class<?> type) {
+      return new PoloCodec(type);
+    }
+  };
+  final Class<?> klass;
+  /**
+   * The fields to serialise when final fields are included
+   */
+  private final Accessor[] fields;
+  /**
+   * The fields to serialise when final fields are excluded, the default
+   */
+  private final Accessor[] nonFinalFields;
+  /**
+   * Fields which can be set when reading, by serialised name and by declared name
+   */
+  private final Map<String, Accessor> readable;
+
+  private PoloCodec(Class<?> klass) {
+    this.klass = klass;
+    Class<BosonProperty> propertyClass = BosonProperty.class;
+    boolean ignoreInheritedFields = false;
+    if (klass.isAnnotationPresent(propertyClass)) {
+      ignoreInheritedFields = klass.getAnnotation(propertyClass).ignoreInheritedFields();
+    }
+    Map<String, Accessor> plan = new LinkedHashMap<>();
+    Map<String, Accessor> renamed = new HashMap<>();
+    readable = new HashMap<>();
+    //get ALL (private,private,protect,package) fields declared in the class - includes inherited fields
+    for (Field field : getAllFields(klass).values()) {
+      String name = field.getName();
+      boolean add = true;
+      //if inherited fields are to be ignored then fields must be declared in the current class
+      if (ignoreInheritedFields && klass != field.getDeclaringClass()) {
+        add = false;
+      }
+      if (Modifier.isTransient(field.getModifiers())) {
+        add = false; //user doesn't want field serialised
+      }
+      //add if annotated with BosonProperty
+      BosonProperty ann = field.getAnnotation(propertyClass);
+      if (ann != null) {
+        if (!ann.value().isEmpty()) {
+          name = ann.value();
+        }
+        if (ann.ignore()) {
+          add = false;
+        }
+        //if configured to ignore inherited fields then
+        //only fields declared in the object's class are allowed
+        if (ann.ignoreInheritedFields() && field.getDeclaringClass() != klass) {
+          add = false;
+        }
+      }
+      Accessor accessor = Accessor.of(name, field);
+      readable.put(field.getName(), accessor);
+      if (!name.equals(field.getName())) {
+        renamed.put(name, accessor);
+      }
+      if (add && accessor.getter != null) {
+        plan.put(name, accessor);
+      }
+    }
+    readable.putAll(renamed);
+    fields = plan.values().toArray(new Accessor[0]);
+    nonFinalFields = plan.values().stream().filter(a -> !a.isFinal).toArray(Accessor[]::new);
+  }
+
+  static PoloCodec of(Class<?> klass) {
+    return codecs.get(klass);
+  }
+
+  /**
+   * @param serialiseFinalFields whether final fields are to be written
+   * @return the fields to write, in order, already filtered and renamed
+   */
+  Accessor[] plan(boolean serialiseFinalFields) {
+    return serialiseFinalFields ? fields : nonFinalFields;
+  }
+
+  /**
+   * @param name the serialised name of a field
+   * @return the field with the given name or null if the class has no such field
+   */
+  Accessor field(String name) {
+    return readable.get(name);
+  }
+
+  static final class Accessor {
+    final String name;
+    final Field field;
+    final boolean isFinal;
+    /**
+     * The Boson type of the field if it is a primitive, null otherwise
+     */
+    final BosonType primitive;
+    /**
+     * (Object)T where T is the field's type if primitive and Object otherwise
+     */
+    final MethodHandle getter;
+    /**
+     * (Object,T)void with T as for the getter, null if the field can't be set this way
+     */
+    final MethodHandle setter;
+
+    private Accessor(String name, Field field, MethodHandle getter, MethodHandle setter) {
+      this.name = name;
+      this.field = field;
+      this.isFinal = Modifier.isFinal(field.getModifiers());
+      this.primitive = primitiveType(field.getType());
+      this.getter = getter;
+      this.setter = setter;
+    }
+
+    static Accessor of(String name, Field field) {
+      Class<?> type = field.getType().isPrimitive() ? field.getType() : Object.class;
+      boolean isStatic = Modifier.isStatic(field.getModifiers());
+      MethodHandle getter = null;
+      MethodHandle setter = null;
+      try {
+        getter = lookup.unreflectGetter(field);
+        if (isStatic) {
+          getter = MethodHandles.dropArguments(getter, 0, Object.class);
+        }
+        getter = getter.asType(MethodType.methodType(type, Object.class));
+      } catch (IllegalAccessException e) {
+        log.warn(format("Unable to access field %s in class %s", field.getName(),
+          field.getDeclaringClass().getName()
+        ), e);
+      }
+      try {
+        setter = lookup.unreflectSetter(field);
+        if (isStatic) {
+          setter = MethodHandles.dropArguments(setter, 0, Object.class);
+        }
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+      } catch (IllegalAccessException e) {
+        //final fields can't always be set through a handle, reflection will be tried when reading
+        setter = null;
+      }
+      return new Accessor(name, field, getter, setter);
+    }
+
+    private static BosonType primitiveType(Class<?> type) {
+      if (!type.isPrimitive()) {
+        return null;
+      } else if (type == int.class) {
+        return BosonType.INT;
+      } else if (type == long.class) {
+        return BosonType.LONG;
+      } else if (type == double.class) {
+        return BosonType.DOUBLE;
+      } else if (type == float.class) {
+        return BosonType.FLOAT;
+      } else if (type == boolean.class) {
+        return BosonType.BOOLEAN;
+      } else if (type == short.class) {
+        return BosonType.SHORT;
+      } else if (type == byte.class) {
+        return BosonType.BYTE;
+      } else if (type == char.class) {
+        return BosonType.CHAR;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package io.higgs.boson.serialization;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The set of dot paths a projected decode keeps, as a tree with one node per path part.
+ * A node is either a selection of some of its children or, if a path ended there, of everything below it.
+ */
+final class Projection {
+  private final Map<String, Projection> children = new HashMap<>();
+  private boolean all;
+
+  private Projection() {
+  }
+
+  static Projection of(Collection<String> paths) {
+    Projection root = new Projection();
+    for (String path : paths) {
+      Projection node = root;
+      for (String part : path.split("\\.")) {
+        node = node.children.computeIfAbsent(part, k -> new Projection());
+      }
+      node.all = true;
+    }
+    return root;
+  }
+
+  /**
+   * @return the selection below the named child or null if it isn't selected
+   */
+  Projection child(String name) {
+    return children.get(name);
+  }
+
+  /**
+   * @return true if everything below this node is selected
+   */
+  boolean all() {
+    return all;
+  }
+}
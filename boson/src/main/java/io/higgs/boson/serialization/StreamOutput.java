@@ -0,0 +1,170 @@
+package io.higgs.boson.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams Boson data to an {@link OutputStream} or a blocking {@link WritableByteChannel} through a fixed size chunk.
+ * The chunk is flushed every time it fills up so memory use stays the same no matter how large the message is,
+ * and since nothing is buffered beyond a chunk the message isn't limited to 2GB.
+ */
+public final class StreamOutput extends BosonOutput {
+  public static final int DEFAULT_CHUNK_SIZE = 8192;
+  private final OutputStream stream;
+  private final WritableByteChannel channel;
+  private final byte[] chunk;
+  private final ByteBuffer chunkBuffer;
+  private int count;
+  private long flushed;
+
+  public StreamOutput(OutputStream stream) {
+    this(stream, DEFAULT_CHUNK_SIZE);
+  }
+
+  public StreamOutput(OutputStream stream, int chunkSize) {
+    this(stream, null, chunkSize);
+  }
+
+  public StreamOutput(WritableByteChannel channel) {
+    this(channel, DEFAULT_CHUNK_SIZE);
+  }
+
+  public StreamOutput(WritableByteChannel channel, int chunkSize) {
+    this(null, channel, chunkSize);
+  }
+
+  private StreamOutput(OutputStream stream, WritableByteChannel channel, int chunkSize) {
+    if (chunkSize < 8) {
+      throw new IllegalArgumentException("Chunk size must be at least 8 bytes");
+    }
+    this.stream = stream;
+    this.channel = channel;
+    chunk = new byte[chunkSize];
+    chunkBuffer = channel == null ? null : ByteBuffer.wrap(chunk);
+  }
+
+  private void ensureRemaining(int n) throws IOException {
+    if (chunk.length - count < n) {
+      drain();
+    }
+  }
+
+  private void drain() throws IOException {
+    if (count == 0) {
+      return;
+    }
+    if (stream != null) {
+      stream.write(chunk, 0, count);
+    } else {
+      chunkBuffer.clear();
+      chunkBuffer.limit(count);
+      while (chunkBuffer.hasRemaining()) {
+        channel.write(chunkBuffer);
+      }
+    }
+    flushed += count;
+    count = 0;
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    ensureRemaining(1);
+    chunk[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    ensureRemaining(2);
+    chunk[count++] = (byte) (v >>> 8);
+    chunk[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    ensureRemaining(4);
+    chunk[count++] = (byte) (v >>> 24);
+    chunk[count++] = (byte) (v >>> 16);
+    chunk[count++] = (byte) (v >>> 8);
+    chunk[count++] = (byte) v;
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    ensureRemaining(8);
+    chunk[count++] = (byte) (v >>> 56);
+    chunk[count++] = (byte) (v >>> 48);
+    chunk[count++] = (byte) (v >>> 40);
+    chunk[count++] = (byte) (v >>> 32);
+    chunk[count++] = (byte) (v >>> 24);
+    chunk[count++] = (byte) (v >>> 16);
+    chunk[count++] = (byte) (v >>> 8);
+    chunk[count++] = (byte) v;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (len >= chunk.length) {
+      //large payloads go straight through rather than being copied chunk by chunk
+      drain();
+      if (stream != null) {
+        stream.write(b, off, len);
+      } else {
+        ByteBuffer src = ByteBuffer.wrap(b, off, len);
+        while (src.hasRemaining()) {
+          channel.write(src);
+        }
+      }
+      flushed += len;
+      return;
+    }
+    while (len > 0) {
+      if (count == chunk.length) {
+        drain();
+      }
+      int n = Math.min(len, chunk.length - count);
+      System.arraycopy(b, off, chunk, count, n);
+      count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public void writeUtf8(String s, int encodedLength) throws IOException {
+    if (encodedLength <= chunk.length) {
+      ensureRemaining(encodedLength);
+      count = Utf8.encode(s, 0, s.length(), chunk, count);
+      return;
+    }
+    //longer than a chunk, encode as many chars as are certain to fit then drain and carry on
+    int len = s.length();
+    int i = 0;
+    while (i < len) {
+      ensureRemaining(6);
+      int end = Math.min(len, i + (chunk.length - count) / 3);
+      if (end < len && Character.isHighSurrogate(s.charAt(end - 1))) {
+        end--; //don't split a surrogate pair
+      }
+      count = Utf8.encode(s, i, end, chunk, count);
+      i = end;
+    }
+  }
+
+  @Override
+  public long position() {
+    return flushed + count;
+  }
+
+  /**
+   * Write out whatever is left in the current chunk and flush the underlying stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    drain();
+    if (stream != null) {
+      stream.flush();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package io.higgs.boson.serialization;
+
+/**
+ * UTF-8 encoding straight into a destination array, producing exactly the bytes {@code s.getBytes(UTF_8)} would
+ * without the intermediate array. As with {@link String#getBytes(java.nio.charset.Charset)} an unpaired surrogate is
+ * written as '?'.
+ */
+final class Utf8 {
+  private Utf8() {
+  }
+
+  /**
+   * @return the number of bytes needed to encode the string
+   */
+  static int encodedLength(String s) {
+    int len = s.length();
+    int i = 0;
+    //most structural strings are ASCII, count those without any other checks
+    while (i < len && s.charAt(i) < 0x80) {
+      i++;
+    }
+    int n = len;
+    for (; i < len; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        continue;
+      } else if (c < 0x800) {
+        n += 1;
+      } else if (!Character.isSurrogate(c)) {
+        n += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+        n += 2; //4 bytes for the 2 chars of the pair
+        i++;
+      }
+      //an unpaired surrogate is replaced by a single byte
+    }
+    return n;
+  }
+
+  /**
+   * Encode chars [start, end) into dst. The caller must make sure dst has room for 3 bytes per char.
+   *
+   * @return the position in dst after the last byte written
+   */
+  static int encode(String s, int start, int end, byte[] dst, int pos) {
+    int i = start;
+    //ASCII fast path, one byte per char with no branching on the encoded width
+    for (; i < end; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      dst[pos++] = (byte) c;
+    }
+    for (; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        dst[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        dst[pos++] = (byte) (0xC0 | (c >> 6));
+        dst[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        dst[pos++] = (byte) (0xE0 | (c >> 12));
+        dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        dst[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, s.charAt(++i));
+        dst[pos++] = (byte) (0xF0 | (cp >> 18));
+        dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else {
+        dst[pos++] = '?';
+      }
+    }
+    return pos;
+  }
+}
@@ -0,0 +1,130 @@
+package io.higgs.boson.serialization;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.higgs.boson.serialization.BosonReader.decode;
+import static io.higgs.boson.serialization.BosonReader.decodeBatch;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.BosonWriter.encodeBatch;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonBatchTest {
+  private static List<Trade> trades(int n) {
+    List<Trade> trades = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      Trade trade = new Trade();
+      trade.id = i;
+      trade.symbol = "S" + i;
+      trade.side = i % 2 == 0 ? Side.BUY : Side.SELL;
+      trade.fills = new long[]{i, i + 1};
+      trades.add(trade);
+    }
+    return trades;
+  }
+
+  @Test
+  public void testBatch() {
+    List<Trade> trades = trades(50);
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      byte[] batch = encodeBatch(trades, ctx);
+      int separately = 0;
+      for (Trade trade : trades) {
+        separately += encode(trade, ctx).length;
+      }
+      //class, field and enum names are written once rather than once per message
+      if (!ctx.sizedContainers) {
+        assertTrue(batch.length < separately / 2);
+      }
+      List<Trade> decoded = decodeBatch(batch);
+      assertEquals(trades.size(), decoded.size());
+      for (int i = 0; i < trades.size(); i++) {
+        assertEquals(i, decoded.get(i).id);
+        assertEquals("S" + i, decoded.get(i).symbol);
+        assertEquals(trades.get(i).side, decoded.get(i).side);
+        assertEquals(i + 1, decoded.get(i).fills[1]);
+      }
+      //any message can be read without those before it
+      BosonBatch<Trade> lazy = BosonBatch.of(ByteBuffer.wrap(batch));
+      assertEquals(41, lazy.get(41).id);
+      assertEquals(3, lazy.get(3).id);
+    }
+    assertEquals(0, decodeBatch(encodeBatch(new ArrayList<>(), new BosonWriter.WriterCtx())).size());
+  }
+
+  @Test
+  public void testSizedContainerBatch() {
+    List<Trade> trades = trades(50);
+    //each trade is a POLO holding an array, two containers whose 12 byte headers every message keeps in a batch
+    int headers = trades.size() * 2 * BosonWriter.WriterCtx.CONTAINER_HEADER;
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      if (!ctx.sizedContainers) {
+        continue;
+      }
+      byte[] batch = encodeBatch(trades, ctx);
+      int separately = 0;
+      for (Trade trade : trades) {
+        separately += encode(trade, ctx).length;
+      }
+      //the headers can't be shared, everything else still shrinks by half
+      assertTrue(batch.length - headers < (separately - headers) / 2);
+      assertEquals(7, BosonBatch.<Trade>of(batch).get(7).id);
+    }
+  }
+
+  @Test
+  public void testReferencesStayWithinAMessage() {
+    Trade trade = trades(1).get(0);
+    List<Object> messages = new ArrayList<>();
+    messages.add(Arrays.asList(trade, trade));
+    messages.add(trade);
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      List<Object> decoded = decodeBatch(encodeBatch(messages, ctx));
+      List<Trade> pair = (List<Trade>) decoded.get(0);
+      assertEquals(trade.symbol, pair.get(1).symbol);
+      Trade second = (Trade) decoded.get(1);
+      assertEquals(trade.symbol, second.symbol);
+      assertNotSame(pair.get(0), second);
+    }
+    List<Object> decoded = decodeBatch(encodeBatch(messages, new BosonWriter.WriterCtx()));
+    List<Trade> pair = (List<Trade>) decoded.get(0);
+    assertSame(pair.get(0), pair.get(1));
+  }
+
+  @Test
+  public void testBatchIsNotAMessage() {
+    byte[] batch = encodeBatch(trades(2), new BosonWriter.WriterCtx());
+    try {
+      decode(batch);
+      fail("a batch can't be read as a single message");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getCause().getMessage().contains("BosonBatch"));
+    }
+    try {
+      BosonBatch.of(encode(trades(2)));
+      fail("a single message isn't a batch");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getMessage().contains("Not a batch"));
+    }
+  }
+
+  public enum Side {
+    BUY, SELL
+  }
+
+  public static class Trade {
+    private long id;
+    private String symbol;
+    private Side side;
+    private long[] fills;
+  }
+}
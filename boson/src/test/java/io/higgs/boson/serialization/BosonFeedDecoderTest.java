@@ -0,0 +1,109 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.BosonType;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonFeedDecoderTest {
+  private static Object message(int i) {
+    Event event = new Event();
+    event.id = i;
+    event.when = new Date(1000L * i);
+    event.type = BosonType.values()[i % 10];
+    event.tags = new String[]{"a", "b" + i};
+    event.counts = new int[]{i, -i};
+    Map<String, Object> data = new HashMap<>();
+    data.put("event", event);
+    data.put("again", event);
+    data.put("text", new String(new char[i * 40]).replace('\0', 'x'));
+    data.put("more", Arrays.asList(1.5d, 'c', (short) 2, null, Long.MIN_VALUE));
+    return data;
+  }
+
+  @Test
+  public void testArbitraryFragments() {
+    Random random = new Random(7);
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      for (int i = 0; i < 30; i++) {
+        byte[] bytes = encode(message(i), ctx);
+        stream.write(bytes, 0, bytes.length);
+      }
+      byte[] all = stream.toByteArray();
+      //byte by byte, in random fragments and all at once
+      for (int maxFragment : new int[]{1, 50, all.length}) {
+        BosonFeedDecoder decoder = new BosonFeedDecoder();
+        List<Object> messages = new ArrayList<>();
+        int at = 0;
+        while (at < all.length) {
+          int n = Math.min(all.length - at, 1 + random.nextInt(maxFragment));
+          decoder.feed(ByteBuffer.wrap(all, at, n), messages);
+          at += n;
+        }
+        assertEquals(0, decoder.pending());
+        assertEquals(30, messages.size());
+        for (int i = 0; i < 30; i++) {
+          Map<String, Object> data = (Map<String, Object>) messages.get(i);
+          Event event = (Event) data.get("event");
+          assertEquals(i, event.id);
+          assertEquals(BosonType.values()[i % 10], event.type);
+          assertArrayEquals(new String[]{"a", "b" + i}, event.tags);
+          assertEquals(i * 40, ((String) data.get("text")).length());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testPartialMessageIsHeld() {
+    byte[] bytes = encode(message(3));
+    BosonFeedDecoder decoder = new BosonFeedDecoder();
+    List<Object> messages = new ArrayList<>();
+    assertEquals(0, decoder.feed(ByteBuffer.wrap(bytes, 0, bytes.length - 1), messages));
+    assertEquals(bytes.length - 1, decoder.pending());
+    assertEquals(1, decoder.feed(ByteBuffer.wrap(bytes, bytes.length - 1, 1), messages));
+    assertTrue(messages.get(0) instanceof Map);
+  }
+
+  @Test
+  public void testInvalidData() {
+    BosonFeedDecoder decoder = new BosonFeedDecoder(new BosonReader.ReaderCtx(), 100);
+    try {
+      decoder.feed(ByteBuffer.wrap(new byte[]{BosonWriter.WriterCtx.VERSION_1, 100}), new ArrayList<>());
+      fail("type 100 doesn't exist");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getCause() instanceof IllegalArgumentException);
+    }
+    decoder = new BosonFeedDecoder(new BosonReader.ReaderCtx(), 100);
+    try {
+      decoder.feed(ByteBuffer.wrap(encode(message(5))), new ArrayList<>());
+      fail("message is larger than the limit");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getMessage().contains("100"));
+    }
+  }
+
+  public static class Event {
+    private int id;
+    private Date when;
+    private BosonType type;
+    private String[] tags;
+    private int[] counts;
+  }
+}
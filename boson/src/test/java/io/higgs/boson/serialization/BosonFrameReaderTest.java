@@ -0,0 +1,96 @@
+package io.higgs.boson.serialization;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.higgs.boson.serialization.BosonReader.decode;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonFrameReaderTest {
+  private static List<Object> messages() {
+    List<Object> messages = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Map<String, Object> data = new HashMap<>();
+      data.put("seq", i);
+      //every few messages is larger than any before it, so the frame buffer has to grow
+      data.put("payload", new byte[i * i * 10]);
+      messages.add(data);
+    }
+    messages.add("last");
+    return messages;
+  }
+
+  @Test
+  public void testFramesBackToBack() {
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      ctx.framed(true);
+      ByteArrayOutputStream log = new ByteArrayOutputStream();
+      StreamOutput out = new StreamOutput(log);
+      for (Object msg : messages()) {
+        BosonWriter.write(msg, ctx, BosonWriter.getInstance(), out);
+      }
+      byte[] bytes = log.toByteArray();
+      //the size follows the version byte, the same bytes whether patched in place or staged for a stream
+      byte[] first = encode(messages().get(0), ctx);
+      assertEquals(first.length - 5, first[4]);
+      assertArrayEquals(first, Arrays.copyOf(bytes, first.length));
+      BosonFrameReader[] readers = {
+        new BosonFrameReader(new ByteArrayInputStream(bytes)),
+        new BosonFrameReader(Channels.newChannel(new ByteArrayInputStream(bytes)))
+      };
+      for (BosonFrameReader frames : readers) {
+        List<Object> read = new ArrayList<>();
+        while (frames.nextFrame()) {
+          assertEquals(frames.frameSize(), frames.frame().remaining());
+          read.add(frames.decode());
+        }
+        assertEquals(21, read.size());
+        assertEquals(7, ((Map<?, ?>) read.get(7)).get("seq"));
+        assertEquals(490, ((byte[]) ((Map<?, ?>) read.get(7)).get("payload")).length);
+        assertEquals("last", read.get(20));
+        assertFalse(frames.nextFrame());
+      }
+    }
+    assertEquals("plain", decode(encode("plain", new BosonWriter.WriterCtx().framed(true))));
+  }
+
+  @Test
+  public void testBrokenFrames() {
+    byte[] framed = encode(messages().get(3), new BosonWriter.WriterCtx().framed(true));
+    byte[][] broken = {
+      encode("not framed"),
+      Arrays.copyOf(framed, framed.length - 1),
+      Arrays.copyOf(framed, 3)
+    };
+    for (byte[] bytes : broken) {
+      BosonFrameReader frames = new BosonFrameReader(new ByteArrayInputStream(bytes));
+      try {
+        frames.nextFrame();
+        fail("frame should be rejected");
+      } catch (InvalidDataException expected) {
+        assertEquals(0, frames.frameSize());
+      }
+    }
+    BosonFrameReader limited = new BosonFrameReader(new ByteArrayInputStream(framed), 10);
+    try {
+      limited.nextFrame();
+      fail("frame is larger than the limit");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getMessage().contains("limit of 10"));
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package io.higgs.boson.serialization;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.higgs.boson.serialization.BosonReader.decode;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonGeneratorTest {
+  private static Map<String, Object> message() {
+    Item item = new Item();
+    item.sku = "A-1";
+    item.quantity = 2;
+    item.prices = new long[]{5, 7};
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("id", 9L);
+    data.put("items", Arrays.asList(item, item));
+    data.put("flags", Arrays.asList(true, null, 'x', 1.5d));
+    return data;
+  }
+
+  /**
+   * Write {@link #message()} the way a translating gateway would, field by field
+   */
+  private static void generate(BosonGenerator gen) {
+    gen.writeStartMap(3);
+    gen.writeString("id");
+    gen.writeLong(9L);
+    gen.writeString("items");
+    gen.writeStartList(2);
+    int ref = generateItem(gen);
+    if (ref >= 0) {
+      gen.writeReference(ref);
+    } else {
+      //without reference tracking the writer writes the item again
+      generateItem(gen);
+    }
+    gen.writeEnd();
+    gen.writeString("flags");
+    gen.writeStartList(4);
+    gen.writeBoolean(true);
+    gen.writeNull();
+    gen.writeChar('x');
+    gen.writeDouble(1.5d);
+    gen.writeEnd();
+    gen.writeEnd();
+  }
+
+  private static int generateItem(BosonGenerator gen) {
+    int ref = gen.writeStartPolo(Item.class.getName(), 3);
+    //fields in the order the writer writes them
+    for (PoloCodec.Accessor field : PoloCodec.of(Item.class).plan(false)) {
+      gen.writeFieldName(field.name);
+      if (field.name.equals("sku")) {
+        gen.writeString("A-1");
+      } else if (field.name.equals("quantity")) {
+        gen.writeInt(2);
+      } else {
+        gen.writeObject(new long[]{5, 7});
+      }
+    }
+    gen.writeEnd();
+    return ref;
+  }
+
+  @Test
+  public void testSameBytesAsWriter() {
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      if (ctx.referenceMode == BosonWriter.References.SHARED) {
+        //needs the whole message up front, which a generator doesn't have
+        continue;
+      }
+      byte[] expected = encode(message(), ctx);
+      BosonGenerator gen = new BosonGenerator(ctx);
+      generate(gen);
+      assertTrue(gen.isComplete());
+      assertArrayEquals(expected, gen.toByteArray());
+      //a stream can't be patched so sized containers are staged in memory
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      gen = BosonGenerator.of(ctx, stream);
+      generate(gen);
+      assertArrayEquals(expected, stream.toByteArray());
+      assertEquals(expected.length, gen.size());
+    }
+    Map<String, Object> decoded = decode(encode(message()));
+    assertEquals(9L, decoded.get("id"));
+  }
+
+  @Test
+  public void testSizesAreEnforced() {
+    BosonGenerator gen = new BosonGenerator(new BosonWriter.WriterCtx());
+    gen.writeStartPolo(Item.class.getName(), 1);
+    try {
+      gen.writeInt(1);
+      fail("a field needs a name");
+    } catch (IllegalStateException expected) {
+      assertTrue(expected.getMessage().contains("a field name"));
+    }
+    gen.writeFieldName("quantity");
+    gen.writeInt(1);
+    try {
+      gen.writeFieldName("sku");
+      fail("only one field was declared");
+    } catch (IllegalStateException expected) {
+      assertTrue(expected.getMessage().contains("the end of the container"));
+    }
+    gen.writeEnd();
+    try {
+      gen.writeInt(2);
+      fail("the message is complete");
+    } catch (IllegalStateException expected) {
+      assertTrue(gen.isComplete());
+    }
+    Item item = decode(gen.toByteArray());
+    assertEquals(1, item.quantity);
+    List<Object> list = new ArrayList<>();
+    gen = new BosonGenerator(new BosonWriter.WriterCtx());
+    gen.writeStartList(2);
+    gen.writeObject(list);
+    try {
+      gen.writeEnd();
+      fail("one element is missing");
+    } catch (IllegalStateException expected) {
+      assertTrue(expected.getMessage().contains("a value"));
+    }
+  }
+
+  public static class Item {
+    private String sku;
+    private int quantity;
+    private long[] prices;
+  }
+}
@@ -0,0 +1,120 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.BosonType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.higgs.boson.serialization.BosonParser.Token.END_LIST;
+import static io.higgs.boson.serialization.BosonParser.Token.END_MAP;
+import static io.higgs.boson.serialization.BosonParser.Token.END_POLO;
+import static io.higgs.boson.serialization.BosonParser.Token.FIELD_NAME;
+import static io.higgs.boson.serialization.BosonParser.Token.START_LIST;
+import static io.higgs.boson.serialization.BosonParser.Token.START_MAP;
+import static io.higgs.boson.serialization.BosonParser.Token.START_POLO;
+import static io.higgs.boson.serialization.BosonParser.Token.VALUE_NUMBER_INT;
+import static io.higgs.boson.serialization.BosonParser.Token.VALUE_REFERENCE;
+import static io.higgs.boson.serialization.BosonParser.Token.VALUE_STRING;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BosonParserTest {
+  @Test
+  public void testTokens() {
+    Point point = new Point();
+    point.x = 3;
+    point.label = "p";
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      BosonParser parser = BosonParser.of(encode(point, ctx));
+      assertEquals(START_POLO, parser.nextToken());
+      assertEquals(Point.class.getName(), parser.getClassName());
+      assertEquals(2, parser.getSize());
+      int fields = 0;
+      while (parser.nextToken() == FIELD_NAME) {
+        String name = parser.getText();
+        BosonParser.Token value = parser.nextToken();
+        assertEquals(name, parser.getCurrentName());
+        if (name.equals("x")) {
+          assertEquals(VALUE_NUMBER_INT, value);
+          assertEquals(BosonType.INT, parser.getCurrentType());
+          assertEquals(3, parser.getIntValue());
+        } else {
+          assertEquals(VALUE_STRING, value);
+          assertEquals("p", parser.getText());
+        }
+        fields++;
+      }
+      assertEquals(2, fields);
+      assertEquals(END_POLO, parser.getCurrentToken());
+      assertNull(parser.nextToken());
+      assertNull(parser.nextToken());
+    }
+  }
+
+  @Test
+  public void testContainers() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("totals", new long[]{1, 2, 3});
+    data.put("names", Arrays.asList("a", "b"));
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      BosonParser parser = BosonParser.of(ByteBuffer.wrap(encode(data, ctx)));
+      assertEquals(START_MAP, parser.nextToken());
+      assertEquals(2, parser.getSize());
+      assertEquals(VALUE_STRING, parser.nextToken());
+      assertTrue(parser.isMapKey());
+      assertEquals("totals", parser.getText());
+      assertEquals(START_LIST, parser.nextToken());
+      assertFalse(parser.isMapKey());
+      assertEquals(3, parser.getSize());
+      long sum = 0;
+      while (parser.nextToken() != END_LIST) {
+        sum += parser.getLongValue();
+      }
+      assertEquals(6, sum);
+      assertEquals("names", parser.nextToken() == VALUE_STRING ? parser.getText() : null);
+      assertEquals(START_LIST, parser.nextToken());
+      assertEquals(END_LIST, parser.skipChildren().getCurrentToken());
+      assertEquals(END_MAP, parser.nextToken());
+      assertNull(parser.nextToken());
+    }
+  }
+
+  @Test
+  public void testSkippedPolosKeepReferenceNumbers() {
+    Point shared = new Point();
+    shared.label = "shared";
+    List<Object> data = new ArrayList<>();
+    data.add(Arrays.asList(new Point(), shared));
+    data.add(new Point());
+    data.add(shared);
+    for (BosonWriter.WriterCtx ctx : new BosonWriter.WriterCtx[]{
+      new BosonWriter.WriterCtx().stringTable(true), new BosonWriter.WriterCtx().sizedContainers(true)}) {
+      BosonParser parser = BosonParser.of(new ByteArrayInputStream(encode(data, ctx)));
+      assertEquals(START_LIST, parser.nextToken());
+      assertEquals(START_LIST, parser.nextToken());
+      parser.skipChildren();
+      //the POLOs in the skipped list took references 0 and 1
+      assertEquals(START_POLO, parser.nextToken());
+      assertEquals(2, parser.getReference());
+      parser.skipChildren();
+      assertEquals(VALUE_REFERENCE, parser.nextToken());
+      assertEquals(1, parser.getReference());
+      assertEquals(END_LIST, parser.nextToken());
+    }
+  }
+
+  public static class Point {
+    private int x;
+    private String label;
+  }
+}
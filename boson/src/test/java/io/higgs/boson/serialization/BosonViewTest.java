@@ -0,0 +1,109 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.BosonType;
+import io.higgs.boson.serialization.Fixtures.Customer;
+import io.higgs.boson.serialization.Fixtures.Order;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.higgs.boson.serialization.BosonReader.decode;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static io.higgs.boson.serialization.Fixtures.order;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BosonViewTest {
+  @Test
+  public void testPaths() {
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      Order order = order();
+      order.note = null;
+      BosonView view = BosonView.of(encode(order, ctx));
+      assertEquals(42, (int) view.<Integer>get("customer.id"));
+      assertEquals("Ann", view.get("customer.name"));
+      assertEquals("second", view.get("lines.1"));
+      assertEquals(3, (int) view.<Integer>get("attributes.priority"));
+      assertEquals(20L, (long) view.<Long>get("totals.1"));
+      //the buyer is a reference to the customer when references are tracked
+      assertEquals("Ann", view.get("attributes.buyer.name"));
+      Customer buyer = view.get("attributes.buyer");
+      assertEquals(42, buyer.id);
+      assertTrue(view.has("note"));
+      assertNull(view.get("note"));
+      assertFalse(view.has("customer.missing"));
+      assertFalse(view.has("lines.2"));
+      assertFalse(view.has("lines.x"));
+      assertFalse(view.has("customer.id.deeper"));
+      Order whole = view.get("");
+      assertArrayEquals(new long[]{10, 20, 30}, whole.totals);
+    }
+  }
+
+  @Test
+  public void testReferenceToSkippedPolo() {
+    Customer customer = new Customer();
+    customer.name = "Bob";
+    List<Object> data = new ArrayList<>();
+    data.add(customer);
+    data.add(customer);
+    BosonView view = BosonView.of(encode(data, new BosonWriter.WriterCtx().stringTable(true)));
+    //element 1 is a reference to element 0 which is skipped to get there
+    Customer second = view.get("1");
+    assertEquals("Bob", second.name);
+    assertTrue(second == view.get("0"));
+  }
+
+  @Test
+  public void testSizedContainersAreJumpedOver() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("skipped", Arrays.asList(1, 2, 3));
+    data.put("wanted", "yes");
+    byte[] bytes = encode(data, new BosonWriter.WriterCtx().sizedContainers(true));
+    //corrupt the type of the list's first element, only parsing the list would notice
+    int element = indexOf(bytes, new byte[]{BosonType.INT.id, 0, 0, 0, 1});
+    bytes[element] = 100;
+    assertEquals("yes", BosonView.of(bytes).get("wanted"));
+    Map<String, Object> decoded = decode(encode(data, new BosonWriter.WriterCtx().sizedContainers(true)));
+    assertEquals(data, decoded);
+  }
+
+  @Test
+  public void testNegativeSizeIsRejected() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("skipped", "abc");
+    data.put("wanted", "yes");
+    byte[] bytes = encode(data);
+    //a corrupt length must not move the view back over bytes it has already read
+    int length = indexOf(bytes, new byte[]{BosonType.STRING.id, 0, 0, 0, 3}) + 1;
+    Arrays.fill(bytes, length, length + 4, (byte) 0xFF);
+    try {
+      BosonView.of(bytes).get("wanted");
+      fail("the skipped string's length is negative");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getCause().getMessage().contains("Negative size"));
+    }
+  }
+
+  private static int indexOf(byte[] data, byte[] target) {
+    outer:
+    for (int i = 0; i <= data.length - target.length; i++) {
+      for (int j = 0; j < target.length; j++) {
+        if (data[i + j] != target[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    throw new AssertionError("not found");
+  }
+}
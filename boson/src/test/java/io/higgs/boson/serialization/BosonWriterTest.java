@@ -1,17 +1,34 @@
 package io.higgs.boson.serialization;
 
+import io.higgs.boson.BosonType;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import static io.higgs.boson.serialization.BosonReader.decode;
@@ -21,6 +38,8 @@ import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Courtney Robinson <courtney@crlog.info>
@@ -206,6 +225,429 @@ public class BosonWriterTest {
     assertEquals(obj.type.value, in.type.value);
   }
 
+  @Test
+  public void testReusingWriterCtx() throws Exception {
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx();
+    OuterEnclosingType obj = new OuterEnclosingType();
+    byte[] first = encode(obj, ctx);
+    byte[] second = encode(obj, ctx);
+    assertArrayEquals(first, second);
+    assertArrayEquals(encode(obj), second);
+    OuterEnclosingType in = decode(second);
+    assertEquals(obj.type.value, in.type.value);
+    ctx.reset();
+    assertEquals(0, ctx.size());
+  }
+
+  @Test
+  public void testEncodeIntoByteBuffer() throws Exception {
+    OuterEnclosingType obj = new OuterEnclosingType();
+    byte[] expected = encode(obj);
+    ByteBuffer direct = ByteBuffer.allocateDirect(1024).order(ByteOrder.LITTLE_ENDIAN);
+    direct.position(3);
+    int written = encode(obj, direct);
+    assertEquals(expected.length, written);
+    assertEquals(3 + written, direct.position());
+    byte[] actual = new byte[written];
+    direct.flip().position(3);
+    direct.get(actual);
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  public void testEncodeIntoByteBufferOverflow() throws Exception {
+    ByteBuffer small = ByteBuffer.allocate(8);
+    try {
+      encode(new OuterEnclosingType(), small);
+      fail("expected overflow");
+    } catch (BosonBufferOverflowException expected) {
+      assertEquals(0, small.position());
+    }
+    ByteBufferOutput out = new ByteBufferOutput(small, ByteBuffer::allocate);
+    int written = encode(new OuterEnclosingType(), out);
+    assertArrayEquals(encode(new OuterEnclosingType()), Arrays.copyOf(out.buffer().array(), written));
+  }
+
+  @Test
+  public void testEncodeToStream() throws Exception {
+    List<Object> data = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      data.add(new OuterEnclosingType());
+      data.add("item " + i);
+    }
+    data.add(new byte[100]);
+    byte[] expected = encode(data);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    long written = encode(data, new StreamOutput(stream, 16));
+    assertEquals(expected.length, written);
+    assertArrayEquals(expected, stream.toByteArray());
+    ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+    encode(data, Channels.newChannel(channelStream));
+    assertArrayEquals(expected, channelStream.toByteArray());
+  }
+
+  @Test
+  public void testPrimitivePoloFields() throws Exception {
+    PrimitiveFields obj = new PrimitiveFields();
+    obj.i = 42;
+    obj.l = Long.MIN_VALUE;
+    obj.d = 1.5;
+    obj.f = 2.5f;
+    obj.bool = true;
+    obj.s = 7;
+    obj.b = -3;
+    obj.c = 'x';
+    obj.boxed = 9;
+    obj.str = "text";
+    obj.renamed = 11;
+    obj.skipped = 12;
+    obj.ignored = 13;
+    PrimitiveFields in = decode(encode(obj));
+    assertEquals(obj.i, in.i);
+    assertEquals(obj.l, in.l);
+    assertEquals(obj.d, in.d);
+    assertEquals(obj.f, in.f);
+    assertEquals(obj.bool, in.bool);
+    assertEquals(obj.s, in.s);
+    assertEquals(obj.b, in.b);
+    assertEquals(obj.c, in.c);
+    assertEquals(obj.boxed, in.boxed);
+    assertEquals(obj.str, in.str);
+    assertEquals(obj.renamed, in.renamed);
+    assertEquals(0, in.skipped);
+    assertEquals(0, in.ignored);
+    BosonReader.ReaderCtx ctx = new BosonReader.ReaderCtx();
+    ctx.readPoloAsMap = true;
+    Map<String, Object> map = decode(encode(obj), ctx);
+    assertEquals(11, map.get("other_name"));
+    assertEquals(11, map.size());
+  }
+
+  @Test
+  public void testFieldPlanPerFinalFieldSetting() throws Exception {
+    BosonReader.ReaderCtx ctx = new BosonReader.ReaderCtx();
+    ctx.readPoloAsMap = true;
+    Map<String, Object> withoutFinal = decode(encode(new WithFinalField()), ctx);
+    assertEquals(1, withoutFinal.size());
+    assertEquals(2, withoutFinal.get("mutable"));
+    ctx = new BosonReader.ReaderCtx();
+    ctx.readPoloAsMap = true;
+    Map<String, Object> withFinal = decode(encode(new WithFinalField(), true), ctx);
+    assertEquals(2, withFinal.size());
+    assertEquals(1, withFinal.get("constant"));
+  }
+
+  @Test
+  public void testStringTable() throws Exception {
+    List<Object> data = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      data.add(new OuterEnclosingType());
+    }
+    byte[] plain = encode(data);
+    byte[] table = encode(data, new BosonWriter.WriterCtx().stringTable(true));
+    assertTrue(table.length < plain.length / 2);
+    List<OuterEnclosingType> in = decode(table);
+    assertEquals(100, in.size());
+    for (OuterEnclosingType obj : in) {
+      assertEquals(SomeType.C, obj.type.value);
+    }
+  }
+
+  @Test
+  public void testVersion2() throws Exception {
+    Map<String, Object> data = new HashMap<>();
+    data.put("ints", asList(0, 1, -1, 63, -64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE));
+    data.put("longs", asList(0L, -1L, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE));
+    data.put("date", new Date());
+    data.put("localDate", LocalDate.now());
+    data.put("joda", DateTime.now());
+    data.put("str", "a str");
+    PrimitiveFields polo = new PrimitiveFields();
+    polo.i = -5;
+    polo.l = 123456789L;
+    data.put("polo", polo);
+    data.put("self", asList(polo, polo));
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().version(BosonWriter.WriterCtx.VERSION_2);
+    byte[] v2 = encode(data, ctx);
+    assertEquals(BosonWriter.WriterCtx.VERSION_2, v2[0]);
+    assertTrue(v2.length < encode(data).length);
+    Map<String, Object> out = decode(v2);
+    assertEquals(data.get("ints"), out.get("ints"));
+    assertEquals(data.get("longs"), out.get("longs"));
+    assertEquals(data.get("date"), out.get("date"));
+    assertEquals(data.get("localDate"), out.get("localDate"));
+    assertEquals(data.get("joda"), out.get("joda"));
+    assertEquals(data.get("str"), out.get("str"));
+    PrimitiveFields outPolo = (PrimitiveFields) out.get("polo");
+    assertEquals(-5, outPolo.i);
+    assertEquals(123456789L, outPolo.l);
+    List<?> self = (List<?>) out.get("self");
+    assertTrue(self.get(0) == outPolo && self.get(1) == outPolo);
+  }
+
+  @Test
+  public void testPackedArrays() throws Exception {
+    Map<String, Object> data = new HashMap<>();
+    data.put("int", new int[]{1, -2, Integer.MAX_VALUE});
+    data.put("long", new long[]{1L, Long.MIN_VALUE});
+    data.put("double", new double[]{1.5, Double.NaN});
+    data.put("float", new float[]{2.5f});
+    data.put("short", new short[]{-7, 8});
+    data.put("char", new char[]{'a', 'z'});
+    data.put("boolean", new boolean[]{true, false, true});
+    data.put("empty", new int[0]);
+    ArrayFields polo = new ArrayFields();
+    polo.values = new int[]{4, 5, 6};
+    data.put("polo", polo);
+    for (byte version : new byte[]{BosonWriter.WriterCtx.VERSION_1, BosonWriter.WriterCtx.VERSION_2}) {
+      BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().packedArrays(true).version(version);
+      byte[] packed = encode(data, ctx);
+      assertTrue(packed.length < encode(data).length);
+      Map<String, Object> out = decode(packed);
+      assertArrayEquals((int[]) data.get("int"), (int[]) out.get("int"));
+      assertArrayEquals((long[]) data.get("long"), (long[]) out.get("long"));
+      assertTrue(Arrays.equals((double[]) data.get("double"), (double[]) out.get("double")));
+      assertTrue(Arrays.equals((float[]) data.get("float"), (float[]) out.get("float")));
+      assertArrayEquals((short[]) data.get("short"), (short[]) out.get("short"));
+      assertArrayEquals((char[]) data.get("char"), (char[]) out.get("char"));
+      assertTrue(Arrays.equals((boolean[]) data.get("boolean"), (boolean[]) out.get("boolean")));
+      assertArrayEquals(new int[0], (int[]) out.get("empty"));
+      assertArrayEquals(polo.values, ((ArrayFields) out.get("polo")).values);
+    }
+  }
+
+  @Test
+  public void testCorruptPackedArrayLength() throws Exception {
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().packedArrays(true).version(BosonWriter.WriterCtx.VERSION_1);
+    byte[] data = encode(new long[]{1, 2, 3}, ctx);
+    //the 4 byte length follows the type and component tags, claim 2^31 - 1 longs
+    int at = indexOf(data, new byte[]{BosonType.PACKED_ARRAY.id, BosonType.LONG.id, 0, 0, 0, 3}) + 2;
+    data[at] = 0x7f;
+    data[at + 1] = data[at + 2] = data[at + 3] = (byte) 0xff;
+    for (Object input : new Object[]{data, ByteBuffer.wrap(data)}) {
+      try {
+        if (input instanceof byte[]) {
+          decode((byte[]) input);
+        } else {
+          decode((ByteBuffer) input);
+        }
+        fail("the array can't be longer than the data");
+      } catch (InvalidDataException expected) {
+        assertTrue(expected.getCause().getMessage().contains("possible data corruption"));
+      }
+    }
+    //a stream can't tell how much is left, 2^24 - 1 longs fit in an array but it runs out of data long before that
+    data[at] = 0;
+    try {
+      decode(new DataInputStream(new ByteArrayInputStream(data)));
+      fail("the stream ends before the array does");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getCause() instanceof EOFException);
+    }
+  }
+
+  private static int indexOf(byte[] data, byte[] target) {
+    for (int i = 0; i <= data.length - target.length; i++) {
+      if (Arrays.equals(Arrays.copyOfRange(data, i, i + target.length), target)) {
+        return i;
+      }
+    }
+    throw new AssertionError("not found");
+  }
+
+  @Test
+  public void testCustomTypeWriter() throws Exception {
+    BosonWriter writer = new BosonWriter();
+    //resolve Integer before registering to make sure registration invalidates earlier lookups
+    encode(1, new BosonWriter.WriterCtx(), writer);
+    Map<String, Object> data = new HashMap<>();
+    data.put("amount", new BigDecimal("12.50"));
+    data.put("int", 1);
+    writer.register(Number.class, (w, ctx, v) -> w.write(ctx, v.toString()));
+    Map<String, Object> out = decode(encode(data, new BosonWriter.WriterCtx(), writer));
+    assertEquals("12.50", out.get("amount"));
+    assertEquals("1", out.get("int"));
+    Map<String, Object> defaults = decode(encode(Collections.singletonMap("int", 1)));
+    assertEquals(1, defaults.get("int"));
+  }
+
+  @Test
+  public void testBackReferencesBeyondIntegerCache() {
+    List<PrimitiveFields> data = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      PrimitiveFields polo = new PrimitiveFields();
+      polo.i = i;
+      data.add(polo);
+    }
+    data.addAll(new ArrayList<>(data));
+    List<PrimitiveFields> out = decode(encode(data));
+    assertEquals(600, out.size());
+    for (int i = 0; i < 300; i++) {
+      assertEquals(i, out.get(i).i);
+      assertTrue(out.get(i) == out.get(i + 300));
+    }
+  }
+
+  @Test
+  public void testUntrackedReferences() {
+    PrimitiveFields polo = new PrimitiveFields();
+    polo.i = 7;
+    List<PrimitiveFields> data = asList(polo, polo);
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().references(BosonWriter.References.NONE);
+    byte[] compact = encode(data, ctx);
+    assertTrue(compact[6] == BosonType.COMPACT_POLO.id);
+    List<PrimitiveFields> out = decode(compact);
+    assertEquals(7, out.get(1).i);
+    assertTrue(out.get(0) != out.get(1));
+
+    CircularReferenceB b = new CircularReferenceB();
+    b.init();
+    try {
+      encode(b, new BosonWriter.WriterCtx().references(BosonWriter.References.NONE).maxDepth(10));
+      fail("A cycle without reference tracking should exceed the max depth");
+    } catch (InvalidDataException e) {
+      assertTrue(e.getMessage().contains("nested more than 10 deep"));
+    }
+  }
+
+  @Test
+  public void testSharedReferences() {
+    PrimitiveFields shared = new PrimitiveFields();
+    PrimitiveFields single = new PrimitiveFields();
+    List<PrimitiveFields> data = asList(shared, single, shared);
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().references(BosonWriter.References.SHARED);
+    List<PrimitiveFields> out = decode(encode(data, ctx));
+    assertTrue(out.get(0) == out.get(2));
+    assertTrue(out.get(0) != out.get(1));
+
+    CircularReferenceB b = new CircularReferenceB();
+    b.init();
+    CircularReferenceB cycle = decode(encode(b, ctx));
+    assertTrue(cycle.a.b == cycle);
+  }
+
+  @Test
+  public void testUtf8MatchesGetBytes() throws Exception {
+    StringBuilder big = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      big.append("a\u00e9\u20ac\ud83d\ude00");
+    }
+    String[] strings = {"", "ascii", "caf\u00e9", "\u20ac\u4e2d", "\ud83d\ude00", "bad\ud800", "\udc00x",
+      "end\ud83d", big.toString()};
+    for (String str : strings) {
+      byte[] expected = str.getBytes("UTF-8");
+      assertEquals(expected.length, Utf8.encodedLength(str));
+      ByteArrayOutput heap = new ByteArrayOutput(0);
+      heap.writeUtf8(str, expected.length);
+      assertArrayEquals(expected, heap.toByteArray());
+      ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+      new ByteBufferOutput(direct).writeUtf8(str, expected.length);
+      direct.flip();
+      byte[] fromDirect = new byte[direct.remaining()];
+      direct.get(fromDirect);
+      assertArrayEquals(expected, fromDirect);
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      StreamOutput out = new StreamOutput(stream, 16);
+      out.writeUtf8(str, expected.length);
+      out.flush();
+      assertArrayEquals(expected, stream.toByteArray());
+      assertEquals(str.replace("\ud800", "?").replace("\udc00", "?").replace("end\ud83d", "end?"),
+        decode(encode(str)));
+    }
+  }
+
+  @Test
+  public void testDecodeFromByteBuffer() {
+    Map<String, Object> data = new HashMap<>();
+    data.put("str", "caf\u00e9");
+    data.put("long", Long.MAX_VALUE);
+    data.put("ints", new int[]{1, -2, 3});
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().packedArrays(true);
+    byte[] bytes = encode(data, ctx);
+    for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(bytes.length + 3), ByteBuffer.allocateDirect(
+      bytes.length + 3)}) {
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.put(new byte[]{9, 9, 9}).put(bytes).flip();
+      buffer.position(3);
+      Map<String, Object> out = decode(buffer);
+      assertEquals("caf\u00e9", out.get("str"));
+      assertEquals(Long.MAX_VALUE, out.get("long"));
+      assertArrayEquals(new int[]{1, -2, 3}, (int[]) out.get("ints"));
+      assertEquals(0, buffer.remaining());
+    }
+    try {
+      decode(Arrays.copyOf(bytes, bytes.length - 1));
+      fail("Truncated data should be rejected");
+    } catch (InvalidDataException e) {
+      assertNotNull(e.getCause());
+    }
+  }
+
+  @Test
+  public void testMappedFile() throws Exception {
+    Map<String, Object> data = new HashMap<>();
+    data.put("str", "caf\u00e9 \u20ac");
+    data.put("long", Long.MIN_VALUE);
+    data.put("doubles", new double[]{1.5, -2.25});
+    data.put("polo", new PrimitiveFields());
+    Path file = Files.createTempFile("boson", ".bin");
+    try {
+      long written = encode(data, file);
+      assertEquals(written, Files.size(file));
+      Map<String, Object> out = decode(file);
+      assertEquals("caf\u00e9 \u20ac", out.get("str"));
+      assertEquals(Long.MIN_VALUE, out.get("long"));
+      //tiny segments so values straddle segment boundaries
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        for (int segment : new int[]{1, 3, 7}) {
+          MappedInput input = MappedInput.map(channel, 0, channel.size(), segment);
+          Map<String, Object> segmented = decode(input, new BosonReader.ReaderCtx());
+          assertEquals("caf\u00e9 \u20ac", segmented.get("str"));
+          assertEquals(Long.MIN_VALUE, segmented.get("long"));
+          assertEquals(-2.25, ((double[]) segmented.get("doubles"))[1], 0);
+          assertEquals(written, input.position());
+        }
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testSizedContainers() throws Exception {
+    Map<String, Object> data = new HashMap<>();
+    data.put("list", asList("a", 1, null));
+    data.put("set", new HashSet<>(asList(1L, 2L)));
+    data.put("array", new String[]{"x", "y"});
+    data.put("polo", new PrimitiveFields());
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().sizedContainers(true).stringTable(true);
+    byte[] bytes = encode(data, ctx);
+    assertEquals(BosonWriter.WriterCtx.VERSION_1 | BosonWriter.WriterCtx.SIZED_CONTAINERS, bytes[0]);
+    Map<String, Object> out = decode(bytes);
+    assertEquals(data.get("list"), out.get("list"));
+    assertEquals(data.get("set"), out.get("set"));
+    assertArrayEquals((String[]) data.get("array"), (String[]) out.get("array"));
+    //a stream can't be back-patched so the message is staged, it must come out identical
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    BosonWriter.write(data, ctx, BosonWriter.getInstance(), new StreamOutput(stream));
+    assertArrayEquals(bytes, stream.toByteArray());
+    ByteBuffer buffer = ByteBuffer.allocate(bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+    BosonWriter.write(data, ctx, BosonWriter.getInstance(), new ByteBufferOutput(buffer));
+    assertArrayEquals(bytes, buffer.array());
+  }
+
+  @Test
+  public void testUnknownTypeFailsFast() {
+    for (byte type : new byte[]{0, 100, 127, -1}) {
+      try {
+        decode(new byte[]{BosonWriter.WriterCtx.VERSION_1, type, 0, 0, 0, 0});
+        fail("Type " + type + " should be rejected");
+      } catch (InvalidDataException e) {
+        assertTrue(e.getCause() instanceof UnsupportedBosonTypeException);
+      }
+    }
+  }
+
   enum SomeType {
     A, B, C
   }
@@ -224,4 +666,31 @@ public class BosonWriterTest {
   public static class OuterEnclosingType {
     private EnumEnclosingType type = new EnumEnclosingType(SomeType.C);
   }
+
+  public static class PrimitiveFields {
+    private int i;
+    private long l;
+    private double d;
+    private float f;
+    private boolean bool;
+    private short s;
+    private byte b;
+    private char c;
+    private Integer boxed;
+    private String str;
+    @BosonProperty("other_name")
+    private int renamed;
+    private transient int skipped;
+    @BosonProperty(ignore = true)
+    private int ignored;
+  }
+
+  public static class WithFinalField {
+    private final int constant = 1;
+    private int mutable = 2;
+  }
+
+  public static class ArrayFields {
+    private int[] values;
+  }
 }
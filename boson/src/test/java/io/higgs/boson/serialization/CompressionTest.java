@@ -0,0 +1,106 @@
+package io.higgs.boson.serialization;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.higgs.boson.serialization.BosonReader.decode;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressionTest {
+  private static Note note(int lines) {
+    Note note = new Note();
+    note.title = "minutes";
+    note.lines = new ArrayList<>();
+    for (int i = 0; i < lines; i++) {
+      note.lines.add("The quick brown fox jumps over the lazy dog, line " + i);
+    }
+    return note;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Note note = note(200);
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      byte[] plain = encode(note, ctx.compressionThreshold(BosonWriter.WriterCtx.NO_COMPRESSION));
+      byte[] compressed = encode(note, ctx.compressionThreshold(1024));
+      assertNotEquals(0, compressed[0] & BosonWriter.WriterCtx.COMPRESSED);
+      assertTrue(compressed.length < plain.length / 4);
+      Note decoded = decode(compressed);
+      assertEquals(note.lines, decoded.lines);
+      //a stream gets the same bytes, the message is compressed in memory first
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      BosonWriter.write(note, ctx, BosonWriter.getInstance(), new StreamOutput(stream));
+      assertArrayEquals(compressed, stream.toByteArray());
+      ByteBuffer buffer = ByteBuffer.allocate(compressed.length + 1);
+      buffer.put(compressed).put((byte) 7).flip();
+      decoded = decode(buffer);
+      assertEquals("minutes", decoded.title);
+      assertEquals(7, buffer.get());
+      assertEquals("minutes", BosonView.of(compressed).get("title"));
+      assertEquals(BosonParser.Token.START_POLO, BosonParser.of(compressed).nextToken());
+      //messages under the threshold are written as usual
+      assertArrayEquals(encode(note(1), ctx.compressionThreshold(BosonWriter.WriterCtx.NO_COMPRESSION)),
+        encode(note(1), ctx.compressionThreshold(1024)));
+    }
+  }
+
+  @Test
+  public void testFramesBatchesAndFeeds() throws Exception {
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().framed(true).compressionThreshold(0);
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    stream.write(encode(note(100), ctx));
+    stream.write(encode(note(3), ctx));
+    BosonFrameReader frames = new BosonFrameReader(new ByteArrayInputStream(stream.toByteArray()));
+    assertTrue(frames.nextFrame());
+    assertEquals(100, frames.<Note>decode().lines.size());
+    assertTrue(frames.nextFrame());
+    assertEquals(3, frames.<Note>decode().lines.size());
+    List<Note> notes = Arrays.asList(note(50), note(60), note(70));
+    byte[] batch = BosonWriter.encodeBatch(notes, ctx.framed(false));
+    assertNotEquals(0, batch[0] & BosonWriter.WriterCtx.COMPRESSED);
+    assertEquals(60, BosonBatch.<Note>of(batch).get(1).lines.size());
+    byte[] unframed = encode(note(100), ctx);
+    BosonFeedDecoder decoder = new BosonFeedDecoder();
+    List<Object> messages = new ArrayList<>();
+    for (int i = 0; i < unframed.length; i += 10) {
+      decoder.feed(ByteBuffer.wrap(unframed, i, Math.min(10, unframed.length - i)), messages);
+    }
+    assertEquals(1, messages.size());
+    assertEquals(100, ((Note) messages.get(0)).lines.size());
+  }
+
+  @Test
+  public void testLimits() {
+    byte[] compressed = encode(note(200), new BosonWriter.WriterCtx().compressionThreshold(0));
+    try {
+      decode(compressed, new BosonReader.ReaderCtx().maxInflatedSize(1024));
+      fail("the message inflates beyond the limit");
+    } catch (InvalidDataException expected) {
+      assertTrue(expected.getCause().getMessage().contains("over the limit"));
+    }
+    compressed[compressed.length / 2] ^= 0x55;
+    try {
+      decode(compressed);
+      fail("the payload is corrupt");
+    } catch (InvalidDataException expected) {
+      //either deflate or the checksum notices
+    }
+  }
+
+  public static class Note {
+    private String title;
+    private List<String> lines;
+  }
+}
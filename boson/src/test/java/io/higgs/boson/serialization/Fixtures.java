@@ -0,0 +1,62 @@
+package io.higgs.boson.serialization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer settings and messages shared by the serialization tests
+ */
+final class Fixtures {
+  private Fixtures() {
+  }
+
+  /**
+   * @return new contexts covering both versions and every optional feature, each test checks its behaviour holds
+   * whichever way a message was written
+   */
+  static BosonWriter.WriterCtx[] contexts() {
+    return new BosonWriter.WriterCtx[]{
+      new BosonWriter.WriterCtx(),
+      new BosonWriter.WriterCtx().version(BosonWriter.WriterCtx.VERSION_2).stringTable(true).packedArrays(true),
+      new BosonWriter.WriterCtx().references(BosonWriter.References.NONE).stringTable(true),
+      new BosonWriter.WriterCtx().references(BosonWriter.References.SHARED).framed(true),
+      new BosonWriter.WriterCtx().sizedContainers(true).stringTable(true),
+      new BosonWriter.WriterCtx().version(BosonWriter.WriterCtx.VERSION_2).sizedContainers(true).framed(true)
+        .references(BosonWriter.References.NONE)
+    };
+  }
+
+  /**
+   * @return an order whose customer is also one of its attributes, so it is written once and referred to once
+   * when references are tracked
+   */
+  static Order order() {
+    Customer customer = new Customer();
+    customer.id = 42;
+    customer.name = "Ann";
+    Order order = new Order();
+    order.customer = customer;
+    order.lines.add("first");
+    order.lines.add("second");
+    order.attributes.put("priority", 3);
+    order.attributes.put("buyer", customer);
+    order.totals = new long[]{10, 20, 30};
+    order.note = "fragile";
+    return order;
+  }
+
+  public static class Customer {
+    int id;
+    String name;
+  }
+
+  public static class Order {
+    Customer customer;
+    List<String> lines = new ArrayList<>();
+    Map<String, Object> attributes = new HashMap<>();
+    long[] totals;
+    String note;
+  }
+}
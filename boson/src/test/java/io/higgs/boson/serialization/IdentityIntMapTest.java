@@ -0,0 +1,72 @@
+package io.higgs.boson.serialization;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdentityIntMapTest {
+  @Test
+  public void testEqualObjectsAreDistinctKeys() {
+    IdentityIntMap map = new IdentityIntMap();
+    String a = new String("same");
+    String b = new String("same");
+    assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(a, 0));
+    assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(b, 1));
+    assertEquals(0, map.putIfAbsent(a, 2));
+    assertEquals(0, map.get(a));
+    assertEquals(1, map.get(b));
+  }
+
+  @Test
+  public void testSharedProbeChains() {
+    //4 slots for 40 keys, every insert probes past others and the table grows through several sizes
+    IdentityIntMap map = new IdentityIntMap(4);
+    Object[] keys = new Object[40];
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = new Object();
+        assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(keys[i], i + round));
+      }
+      for (int i = 0; i < keys.length; i++) {
+        assertEquals(i + round, map.get(keys[i]));
+        assertEquals(i + round, map.putIfAbsent(keys[i], -1));
+      }
+      assertEquals(keys.length, map.size());
+      //cleared slots keep their old values, none of them may leak out
+      map.clear();
+      assertEquals(IdentityIntMap.ABSENT, map.get(keys[0]));
+      assertEquals(IdentityIntMap.ABSENT, map.get(null));
+    }
+  }
+
+  @Test
+  public void testNullIsAbsent() {
+    IdentityIntMap map = new IdentityIntMap();
+    assertEquals(IdentityIntMap.ABSENT, map.get(null));
+    try {
+      map.putIfAbsent(null, 0);
+      fail("null can't be a key");
+    } catch (IllegalArgumentException expected) {
+      //an empty slot is null
+    }
+  }
+
+  @Test
+  public void testGrowAndClear() {
+    IdentityIntMap map = new IdentityIntMap();
+    Object[] keys = new Object[200_000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new Object();
+      assertEquals(IdentityIntMap.ABSENT, map.putIfAbsent(keys[i], i));
+    }
+    assertEquals(keys.length, map.size());
+    for (int i = 0; i < keys.length; i++) {
+      assertEquals(i, map.get(keys[i]));
+    }
+    map.clear();
+    assertTrue(map.isEmpty());
+    assertEquals(IdentityIntMap.ABSENT, map.get(keys[0]));
+  }
+}
@@ -0,0 +1,113 @@
+package io.higgs.boson.serialization;
+
+import io.higgs.boson.serialization.Fixtures.Customer;
+import io.higgs.boson.serialization.Fixtures.Order;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.higgs.boson.serialization.BosonReader.decode;
+import static io.higgs.boson.serialization.BosonWriter.encode;
+import static io.higgs.boson.serialization.Fixtures.contexts;
+import static io.higgs.boson.serialization.Fixtures.order;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProjectionTest {
+  @Test
+  public void testPaths() {
+    for (BosonWriter.WriterCtx ctx : contexts()) {
+      Order order = decode(encode(order(), ctx), Arrays.asList("customer.id", "attributes.priority",
+        "totals"));
+      assertEquals(42, order.customer.id);
+      assertNull(order.customer.name);
+      assertTrue(order.lines.isEmpty());
+      assertEquals(Collections.singletonMap("priority", 3), order.attributes);
+      assertArrayEquals(new long[]{10, 20, 30}, order.totals);
+      assertNull(order.note);
+    }
+  }
+
+  @Test
+  public void testPolosReadAsMaps() {
+    BosonReader.ReaderCtx ctx = new BosonReader.ReaderCtx().project(Arrays.asList("customer", "note"));
+    ctx.readPoloAsMap = true;
+    Map<String, Object> order = decode(encode(order()), ctx);
+    assertEquals(2, order.size());
+    assertEquals("fragile", order.get("note"));
+    assertEquals("Ann", ((Map<String, Object>) order.get("customer")).get("name"));
+  }
+
+  @Test
+  public void testTargetClass() {
+    Summary summary = decode(encode(order()), Summary.class);
+    assertEquals("fragile", summary.note);
+    //Customer can't be assigned to the field so it's read as the field's type
+    assertEquals(42, summary.customer.id);
+  }
+
+  @Test
+  public void testReferenceToSkippedPolo() {
+    byte[] data = encode(order());
+    //the customer is written after the attributes so it refers to the buyer, which isn't selected and is gone back to
+    Order order = decode(data, Collections.singletonList("customer.name"));
+    assertTrue(order.attributes.isEmpty());
+    assertEquals("Ann", order.customer.name);
+    assertEquals(0, order.customer.id);
+    //a stream can't go back so the reference can't be resolved
+    order = decode(new DataInputAdapter(new DataInputStream(new ByteArrayInputStream(data))),
+      new BosonReader.ReaderCtx().project(Collections.singletonList("customer.name")));
+    assertNull(order.customer);
+  }
+
+  @Test
+  public void testPolosInContainers() {
+    Basket basket = new Basket();
+    basket.label = "weekly";
+    for (int i = 0; i < 3; i++) {
+      Customer customer = new Customer();
+      customer.id = i + 1;
+      customer.name = "c" + i;
+      basket.buyers.add(customer);
+      basket.byName.put(customer.name, customer);
+    }
+    BosonWriter.WriterCtx ctx = new BosonWriter.WriterCtx().references(BosonWriter.References.NONE);
+    //label is written after the list and map, it must not be read once they have been
+    Basket decoded = decode(encode(basket, ctx), Arrays.asList("buyers.name", "byName.c0.id", "byName.c2.id"));
+    assertNull(decoded.label);
+    for (int i = 0; i < 3; i++) {
+      assertEquals("c" + i, decoded.buyers.get(i).name);
+      assertEquals(0, decoded.buyers.get(i).id);
+    }
+    //map keys narrow the selection, each selected value is projected in turn
+    assertEquals(2, decoded.byName.size());
+    for (int i = 0; i < 3; i += 2) {
+      assertEquals(i + 1, decoded.byName.get("c" + i).id);
+      assertNull(decoded.byName.get("c" + i).name);
+    }
+  }
+
+  public static class Basket {
+    private String label;
+    private List<Customer> buyers = new ArrayList<>();
+    private Map<String, Customer> byName = new HashMap<>();
+  }
+
+  public static class Summary {
+    private CustomerId customer;
+    private String note;
+  }
+
+  public static class CustomerId {
+    private int id;
+  }
+}